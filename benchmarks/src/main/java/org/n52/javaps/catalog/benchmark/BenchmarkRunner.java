@@ -0,0 +1,41 @@
+/*
+ * Copyright 2019-2020 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.n52.javaps.catalog.benchmark;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the benchmarks with the GC profiler, so that the allocation rate ({@code gc.alloc.rate.norm}) is reported
+ * next to the timings. Accepts the usual JMH command line options, e.g. {@code java -jar benchmarks.jar
+ * RequestBody -p processes=1000}.
+ */
+public final class BenchmarkRunner {
+    private BenchmarkRunner() {
+    }
+
+    public static void main(String[] args) throws RunnerException, CommandLineOptionException {
+        CommandLineOptions commandLineOptions = new CommandLineOptions(args);
+        new Runner(new OptionsBuilder().parent(commandLineOptions)
+                                       .addProfiler(GCProfiler.class)
+                                       .build()).run();
+    }
+}
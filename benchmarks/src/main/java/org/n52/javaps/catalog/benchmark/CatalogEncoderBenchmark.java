@@ -0,0 +1,85 @@
+/*
+ * Copyright 2019-2020 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.n52.javaps.catalog.benchmark;
+
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.n52.javaps.catalog.CatalogConfiguration;
+import org.n52.javaps.catalog.CatalogEncoderImpl;
+import org.n52.javaps.catalog.EncodingCache;
+import org.n52.javaps.catalog.ServiceDescription;
+import org.n52.shetland.ogc.wps.ap.ApplicationPackage;
+import org.n52.svalbard.encode.exception.EncodingException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks the creation of the service description for a growing number of registered processes. The encodings of
+ * the process offerings are cached after the first invocation, so this measures the assembly of the document.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CatalogEncoderBenchmark {
+    @Param({ "10", "100", "1000" })
+    private int processes;
+    private CatalogEncoderImpl encoder;
+    private CatalogConfiguration configuration;
+    private ServiceDescription serviceDescription;
+    private ApplicationPackage applicationPackage;
+
+    @Setup
+    public void setup() throws EncodingException {
+        List<ApplicationPackage> applicationPackages = Fixtures.applicationPackages(processes);
+        this.encoder = Fixtures.encoder(new EncodingCache());
+        this.configuration = Fixtures.configuration(applicationPackages);
+        this.serviceDescription = encoder.createServiceDescription(configuration);
+        this.applicationPackage = applicationPackages.get(0);
+    }
+
+    @Benchmark
+    public ObjectNode createServiceInsertion() throws EncodingException {
+        return encoder.createServiceInsertion(configuration);
+    }
+
+    /**
+     * Re-registers a single process with the incrementally maintained service description and creates the document,
+     * as it is done for every repository event.
+     *
+     * @return the service description document
+     * @throws EncodingException if the encoding fails
+     */
+    @Benchmark
+    public ObjectNode updateServiceDescription() throws EncodingException {
+        serviceDescription.register(applicationPackage);
+        return serviceDescription.toJson();
+    }
+}
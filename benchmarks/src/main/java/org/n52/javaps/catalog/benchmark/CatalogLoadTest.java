@@ -0,0 +1,346 @@
+/*
+ * Copyright 2019-2020 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.n52.javaps.catalog.benchmark;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.distribution.HistogramSnapshot;
+import io.micrometer.core.instrument.distribution.ValueAtPercentile;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import okhttp3.OkHttpClient;
+import okhttp3.mockwebserver.MockWebServer;
+import org.n52.javaps.catalog.ApplicationPackageRegistry;
+import org.n52.javaps.catalog.BulkCatalogTransport;
+import org.n52.javaps.catalog.CatalogClientImpl;
+import org.n52.javaps.catalog.CatalogConfiguration;
+import org.n52.javaps.catalog.CatalogListener;
+import org.n52.javaps.catalog.CatalogState;
+import org.n52.javaps.catalog.CatalogTransport;
+import org.n52.javaps.catalog.CircuitBreaker;
+import org.n52.javaps.catalog.EncodingCache;
+import org.n52.javaps.catalog.InMemoryCatalogLease;
+import org.n52.javaps.catalog.ResilientCatalogClient;
+import org.n52.javaps.catalog.RetryPolicy;
+import org.n52.javaps.catalog.SingleRecordCatalogTransport;
+import org.n52.javaps.catalog.UpsertStrategy;
+import org.n52.javaps.catalog.http.HttpClientProvider;
+import org.n52.shetland.ogc.wps.ap.ApplicationPackage;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Load test of the catalog publication. Starts a {@link StandInCatalog} on a local {@link MockWebServer}, drives a
+ * {@link CatalogListener} with register and unregister events and reports the throughput, the latency of requests
+ * and events and the number of requests per event. An event is complete when the catalog received the next write or
+ * deletion of the affected record, so coalesced events complete together.
+ * <p>
+ * Options are passed as {@code --name=value}:
+ * <dl>
+ * <dt>{@code events}</dt><dd>number of register and unregister events (10000)</dd>
+ * <dt>{@code processes}</dt><dd>number of distinct processes (500)</dd>
+ * <dt>{@code initial}</dt><dd>number of processes registered before the listener starts (100)</dd>
+ * <dt>{@code producers}</dt><dd>number of threads generating events (4)</dd>
+ * <dt>{@code unregister}</dt><dd>fraction of events that unregister a process (0.2)</dd>
+ * <dt>{@code latency}, {@code jitter}</dt><dd>response latency of the catalog (PT0.005S, PT0.01S)</dd>
+ * <dt>{@code errorRate}</dt><dd>fraction of requests that fail with {@code 503} (0.01)</dd>
+ * <dt>{@code notFoundOnUpdate}</dt><dd>if updates of unknown records are rejected with {@code 404} (true)</dd>
+ * <dt>{@code head}</dt><dd>if the catalog supports {@code HEAD} requests (true)</dd>
+ * <dt>{@code upsert}</dt><dd>the {@link UpsertStrategy} (CACHED)</dd>
+ * <dt>{@code window}, {@code flushThreshold}</dt><dd>publication window and flush threshold (PT0.1S, 128)</dd>
+ * <dt>{@code batch}, {@code batchBytes}</dt><dd>records and bytes per request, batches use the bulk endpoint
+ * (1, 1048576)</dd>
+ * <dt>{@code maxRequestsPerHost}</dt><dd>concurrent requests to the catalog (5)</dd>
+ * <dt>{@code drainTimeout}</dt><dd>maximum time to wait for outstanding publications (PT5M)</dd>
+ * </dl>
+ */
+public final class CatalogLoadTest {
+    private static final double[] PERCENTILES = { 0.5, 0.9, 0.99, 0.999 };
+    private static final long POLL_INTERVAL_MILLIS = 100;
+    private final Options options;
+    private final MeterRegistry registry = new SimpleMeterRegistry();
+    private final Map<String, ApplicationPackage> registered = new ConcurrentHashMap<>();
+    private final Map<String, List<Long>> pending = new ConcurrentHashMap<>();
+    private final AtomicLong revisions = new AtomicLong();
+    private final Timer requestLatency;
+    private final Timer eventLatency;
+
+    private CatalogLoadTest(Options options) {
+        this.options = options;
+        this.requestLatency = timer("load.request.latency");
+        this.eventLatency = timer("load.event.latency");
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        new CatalogLoadTest(new Options(args)).run(System.out);
+    }
+
+    private void run(PrintStream out) throws IOException, InterruptedException {
+        StandInCatalog catalog = new StandInCatalog(this::onChange);
+        catalog.setLatency(options.getDuration("latency", Duration.ofMillis(5)));
+        catalog.setJitter(options.getDuration("jitter", Duration.ofMillis(10)));
+        catalog.setErrorRate(options.getDouble("errorRate", 0.01));
+        catalog.setNotFoundOnUpdate(options.getBoolean("notFoundOnUpdate", true));
+        catalog.setHeadSupported(options.getBoolean("head", true));
+
+        MockWebServer server = new MockWebServer();
+        server.setDispatcher(catalog);
+        server.start();
+
+        ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "catalog-publisher");
+            thread.setDaemon(true);
+            return thread;
+        });
+        // the server keeps every request, drop them to not measure our own garbage
+        scheduler.scheduleWithFixedDelay(() -> drain(server), 1, 1, TimeUnit.SECONDS);
+
+        HttpClientProvider httpClientProvider = new HttpClientProvider();
+        httpClientProvider.setMaxRequestsPerHost(options.getInt("maxRequestsPerHost", 5));
+        httpClientProvider.setHttp2(false);
+        httpClientProvider.init();
+        OkHttpClient client = httpClientProvider.get().newBuilder().addInterceptor(chain -> {
+            long start = System.nanoTime();
+            try {
+                return chain.proceed(chain.request());
+            } finally {
+                requestLatency.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            }
+        }).build();
+
+        int processes = options.getInt("processes", 500);
+        for (int i = 0; i < Math.min(processes, options.getInt("initial", 100)); ++i) {
+            register(getIdentifier(i), false);
+        }
+
+        ApplicationPackageRegistry registry = Fixtures.registry(Fixtures.repository(registered));
+        CatalogConfiguration config = Fixtures.configuration(server.url("/catalog/").toString(), registry);
+        CatalogClientImpl catalogClient = new CatalogClientImpl(config, client,
+                                                                UpsertStrategy.valueOf(options.getString(
+                                                                        "upsert", UpsertStrategy.DEFAULT.name())));
+        CircuitBreaker circuitBreaker = new CircuitBreaker("load-test", 5, Duration.ofSeconds(1));
+        ResilientCatalogClient resilientClient = new ResilientCatalogClient(
+                catalogClient, new RetryPolicy(5, Duration.ofMillis(50), Duration.ofSeconds(2)), circuitBreaker,
+                scheduler);
+        int batch = options.getInt("batch", 1);
+        CatalogTransport transport = batch > 1
+                                     ? new BulkCatalogTransport(config, client, resilientClient, batch,
+                                                                options.getInt("batchBytes", 1024 * 1024))
+                                     : new SingleRecordCatalogTransport(resilientClient);
+        CatalogListener listener = new CatalogListener(config, Fixtures.encoder(new EncodingCache()),
+                                                       resilientClient, transport, scheduler, null,
+                                                       new CatalogState(null), new InMemoryCatalogLease());
+        listener.setPublicationWindow(options.getString("window", "PT0.1S"));
+        listener.setPublicationFlushThreshold(options.getInt("flushThreshold", 128));
+        listener.setReconciliationInterval(Duration.ZERO.toString());
+        listener.init();
+        long initialRequests = catalog.getRequestCount();
+        out.printf("initial sync: %d processes, %d requests%n", registered.size(), initialRequests);
+
+        int events = options.getInt("events", 10000);
+        double unregister = options.getDouble("unregister", 0.2);
+        int producers = options.getInt("producers", 4);
+        AtomicLong remaining = new AtomicLong(events);
+        long start = System.nanoTime();
+        ExecutorService executor = Executors.newFixedThreadPool(producers);
+        for (int i = 0; i < producers; ++i) {
+            executor.execute(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                while (remaining.getAndDecrement() > 0) {
+                    String id = getIdentifier(random.nextInt(processes));
+                    ApplicationPackage applicationPackage = registered.get(id);
+                    if (applicationPackage != null && random.nextDouble() < unregister) {
+                        unregister(id, applicationPackage, registry, listener);
+                    } else {
+                        ApplicationPackage registeredPackage = register(id, true);
+                        // the registry is notified first, like the CatalogRegistry does
+                        registry.onRegister(registeredPackage);
+                        listener.onRegister(registeredPackage);
+                    }
+                }
+            });
+        }
+        executor.shutdown();
+        executor.awaitTermination(1, TimeUnit.HOURS);
+        long produced = System.nanoTime() - start;
+
+        awaitQuiescence(catalog, options.getDuration("drainTimeout", Duration.ofMinutes(5)));
+        long elapsed = System.nanoTime() - start;
+        long requests = catalog.getRequestCount() - initialRequests;
+
+        out.printf("events:              %d in %d ms (%.0f events/s offered)%n", events,
+                   TimeUnit.NANOSECONDS.toMillis(produced), events / seconds(produced));
+        out.printf("throughput:          %.0f events/s until the catalog was up to date (%d ms)%n",
+                   events / seconds(elapsed), TimeUnit.NANOSECONDS.toMillis(elapsed));
+        out.printf("requests:            %d (%.3f per event) %s%n", requests, (double) requests / events,
+                   catalog.getRequests());
+        out.printf("responses:           %s%n", catalog.getResponses());
+        out.printf("request latency:     %s%n", format(requestLatency.takeSnapshot()));
+        out.printf("event latency:       %s%n", format(eventLatency.takeSnapshot()));
+        out.printf("incomplete events:   %d%n", pending.values().stream().mapToInt(List::size).sum());
+        out.printf("skipped:             %d, retries: %d, saved checks: %d, circuit breaker opened: %d%n",
+                   listener.getSkipped(), resilientClient.getRetries(), catalogClient.getSavedRequests(),
+                   circuitBreaker.getOpened());
+        out.printf("records:             %d (%d registered + service)%n", catalog.size(), registered.size());
+
+        listener.destroy();
+        scheduler.shutdownNow();
+        httpClientProvider.destroy();
+        server.shutdown();
+    }
+
+    private ApplicationPackage register(String id, boolean track) {
+        String version = String.format("1.0.%d", revisions.incrementAndGet());
+        ApplicationPackage applicationPackage = id.hashCode() % 2 == 0
+                                                ? Fixtures.ndvi(id, version)
+                                                : Fixtures.quality(id, version);
+        if (track) {
+            track(id);
+        }
+        registered.put(id, applicationPackage);
+        return applicationPackage;
+    }
+
+    private void unregister(String id, ApplicationPackage applicationPackage, ApplicationPackageRegistry registry,
+                            CatalogListener listener) {
+        if (registered.remove(id, applicationPackage)) {
+            track(id);
+            registry.onUnregister(applicationPackage);
+            listener.onUnregister(applicationPackage);
+        }
+    }
+
+    private void track(String id) {
+        long start = System.nanoTime();
+        pending.compute(id, (key, starts) -> {
+            List<Long> list = starts == null ? new ArrayList<>() : starts;
+            list.add(start);
+            return list;
+        });
+    }
+
+    private void onChange(String id) {
+        List<Long> starts = pending.remove(id);
+        if (starts != null) {
+            long now = System.nanoTime();
+            starts.forEach(start -> eventLatency.record(now - start, TimeUnit.NANOSECONDS));
+        }
+    }
+
+    /**
+     * Waits until all events completed and the service description was published, i.e. no requests were received
+     * for two publication windows.
+     */
+    private void awaitQuiescence(StandInCatalog catalog, Duration timeout) throws InterruptedException {
+        long deadline = System.nanoTime() + timeout.toNanos();
+        long idle = Math.max(2 * Duration.parse(options.getString("window", "PT0.1S")).toMillis(), 500);
+        long requests = -1;
+        long lastChange = System.currentTimeMillis();
+        while (System.nanoTime() < deadline) {
+            long current = catalog.getRequestCount();
+            if (current != requests) {
+                requests = current;
+                lastChange = System.currentTimeMillis();
+            } else if (pending.isEmpty() && System.currentTimeMillis() - lastChange >= idle) {
+                return;
+            }
+            Thread.sleep(POLL_INTERVAL_MILLIS);
+        }
+    }
+
+    private Timer timer(String name) {
+        return Timer.builder(name)
+                    .publishPercentiles(PERCENTILES)
+                    .distributionStatisticExpiry(Duration.ofDays(1))
+                    .distributionStatisticBufferLength(1)
+                    .register(registry);
+    }
+
+    private static void drain(MockWebServer server) {
+        try {
+            while (server.takeRequest(0, TimeUnit.MILLISECONDS) != null) {
+                // discard
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static String format(HistogramSnapshot snapshot) {
+        StringBuilder builder = new StringBuilder();
+        builder.append(String.format("n=%d mean=%.1fms", snapshot.count(), snapshot.mean(TimeUnit.MILLISECONDS)));
+        for (ValueAtPercentile percentile : snapshot.percentileValues()) {
+            builder.append(String.format(" p%s=%.1fms", percentile.percentile() * 100,
+                                         percentile.value(TimeUnit.MILLISECONDS)));
+        }
+        builder.append(String.format(" max=%.1fms", snapshot.max(TimeUnit.MILLISECONDS)));
+        return builder.toString();
+    }
+
+    private static String getIdentifier(int i) {
+        return String.format("process-%d", i);
+    }
+
+    private static double seconds(long nanos) {
+        return nanos / (double) TimeUnit.SECONDS.toNanos(1);
+    }
+
+    private static final class Options {
+        private final Map<String, String> values = new HashMap<>();
+
+        Options(String[] args) {
+            for (String arg : args) {
+                if (!arg.startsWith("--") || arg.indexOf('=') < 0) {
+                    throw new IllegalArgumentException("invalid option: " + arg);
+                }
+                values.put(arg.substring(2, arg.indexOf('=')), arg.substring(arg.indexOf('=') + 1));
+            }
+        }
+
+        String getString(String name, String defaultValue) {
+            return values.getOrDefault(name, defaultValue);
+        }
+
+        int getInt(String name, int defaultValue) {
+            return values.containsKey(name) ? Integer.parseInt(values.get(name)) : defaultValue;
+        }
+
+        double getDouble(String name, double defaultValue) {
+            return values.containsKey(name) ? Double.parseDouble(values.get(name)) : defaultValue;
+        }
+
+        boolean getBoolean(String name, boolean defaultValue) {
+            return values.containsKey(name) ? Boolean.parseBoolean(values.get(name)) : defaultValue;
+        }
+
+        Duration getDuration(String name, Duration defaultValue) {
+            return values.containsKey(name) ? Duration.parse(values.get(name)) : defaultValue;
+        }
+    }
+}
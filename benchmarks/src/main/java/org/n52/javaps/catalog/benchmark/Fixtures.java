@@ -0,0 +1,465 @@
+/*
+ * Copyright 2019-2020 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.n52.javaps.catalog.benchmark;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import okhttp3.HttpUrl;
+import org.n52.iceland.ogc.ows.OwsServiceMetadataRepository;
+import org.n52.iceland.util.LocalizedProducer;
+import org.n52.janmayen.i18n.MultilingualString;
+import org.n52.javaps.catalog.ApplicationPackageRegistry;
+import org.n52.javaps.catalog.CatalogConfiguration;
+import org.n52.javaps.catalog.CatalogConfigurationImpl;
+import org.n52.javaps.catalog.CatalogEncoderImpl;
+import org.n52.javaps.catalog.CatalogImpl;
+import org.n52.javaps.catalog.EncodingCache;
+import org.n52.javaps.catalog.ServiceUrls;
+import org.n52.javaps.engine.Engine;
+import org.n52.javaps.transactional.TransactionalAlgorithmRepository;
+import org.n52.shetland.ogc.ows.OwsAddress;
+import org.n52.shetland.ogc.ows.OwsCode;
+import org.n52.shetland.ogc.ows.OwsContact;
+import org.n52.shetland.ogc.ows.OwsKeyword;
+import org.n52.shetland.ogc.ows.OwsOnlineResource;
+import org.n52.shetland.ogc.ows.OwsResponsibleParty;
+import org.n52.shetland.ogc.ows.OwsServiceIdentification;
+import org.n52.shetland.ogc.ows.OwsServiceProvider;
+import org.n52.shetland.ogc.wps.Format;
+import org.n52.shetland.ogc.wps.ProcessOffering;
+import org.n52.shetland.ogc.wps.ap.ApplicationPackage;
+import org.n52.shetland.ogc.wps.ap.DockerExecutionUnit;
+import org.n52.shetland.ogc.wps.description.ComplexDescription;
+import org.n52.shetland.ogc.wps.description.LiteralInputDescription;
+import org.n52.shetland.ogc.wps.description.ProcessDescription;
+import org.n52.shetland.ogc.wps.description.ProcessInputDescription;
+import org.n52.shetland.ogc.wps.description.ProcessOutputDescription;
+import org.n52.shetland.ogc.wps.description.impl.ProcessDescriptionFactory;
+import org.n52.svalbard.encode.Encoder;
+import org.n52.svalbard.encode.EncoderRepository;
+import org.n52.svalbard.encode.json.JSONEncoder;
+
+import java.lang.reflect.Proxy;
+import java.net.URI;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * Synthetic process descriptions, application packages and service metadata for the benchmarks. The JSON encoders
+ * of javaPS are replaced by encoders that produce documents of a comparable size and structure, so the benchmarks
+ * only measure the catalog encoding and serialization.
+ */
+final class Fixtures {
+    static final String SERVICE_URL = "https://testbed.dev.52north.org/eopad/rest/";
+    static final String CATALOG_URL = "https://catalog.example.org/eopad/";
+    private static final ProcessDescriptionFactory FACTORY = ProcessDescriptionFactory.instance();
+    private static final Format ZIP = new Format("application/zip");
+    private static final Format GEOTIFF = new Format("image/tiff; application=geotiff");
+    private static final Format JSON = new Format("application/json");
+    private static final String DEFAULT_VERSION = "1.0.0";
+    private static final String DOCKERIZED_APPLICATION = "http://www.opengis.net/profiles/eoc/dockerizedApplication";
+
+    private Fixtures() {
+    }
+
+    /**
+     * Creates an application package resembling the NDVI application package of the EOPAD testbed: a single
+     * Sentinel-2 product input, two band literals and a GeoTIFF output.
+     *
+     * @param id the process identifier
+     * @return the application package
+     */
+    static ApplicationPackage ndvi(String id) {
+        return ndvi(id, DEFAULT_VERSION);
+    }
+
+    static ApplicationPackage ndvi(String id, String version) {
+        ProcessDescription description = FACTORY.process()
+                                                .withIdentifier(id)
+                                                .withTitle("Calculation of NDVI using the SNAP toolbox for Sentinel-2")
+                                                .withAbstract("Calculates the normalized difference vegetation "
+                                                              + "index of a Sentinel-2 Level-1C product.")
+                                                .withVersion(version)
+                                                .withKeyword("Vegetation")
+                                                .withKeyword("Sentinel-2")
+                                                .withKeyword("NDVI")
+                                                .withInput(product("source"))
+                                                .withInput(band("red_source_band", "B4"))
+                                                .withInput(band("nir_source_band", "B8"))
+                                                .withOutput(raster("raster"))
+                                                .build();
+        return applicationPackage(description, "docker.52north.org/eopad/ndvi:latest");
+    }
+
+    /**
+     * Creates an application package resembling the quality application package of the EOPAD testbed: a list of
+     * Sentinel-2 products, a set of literal thresholds and a GeoTIFF and a JSON output.
+     *
+     * @param id the process identifier
+     * @return the application package
+     */
+    static ApplicationPackage quality(String id) {
+        return quality(id, DEFAULT_VERSION);
+    }
+
+    static ApplicationPackage quality(String id, String version) {
+        ProcessDescription description = FACTORY.process()
+                                                .withIdentifier(id)
+                                                .withTitle("Sentinel-2 quality indicators")
+                                                .withAbstract("Calculates cloud, snow and water coverage "
+                                                              + "indicators for a series of Sentinel-2 products.")
+                                                .withVersion(version)
+                                                .withKeyword("Quality")
+                                                .withKeyword("Sentinel-2")
+                                                .withKeyword("Clouds")
+                                                .withKeyword("Snow")
+                                                .withInput(FACTORY.complexInput()
+                                                                  .withIdentifier("sources")
+                                                                  .withTitle("Sentinel-2 Level-1C products")
+                                                                  .withMinimalOccurence(1)
+                                                                  .withMaximalOccurence(100)
+                                                                  .withDefaultFormat(ZIP)
+                                                                  .withSupportedFormat(ZIP))
+                                                .withInput(threshold("cloud_threshold"))
+                                                .withInput(threshold("snow_threshold"))
+                                                .withInput(threshold("water_threshold"))
+                                                .withInput(band("mask_band", "SCL"))
+                                                .withOutput(raster("quality_raster"))
+                                                .withOutput(FACTORY.complexOutput()
+                                                                   .withIdentifier("statistics")
+                                                                   .withTitle("Quality statistics")
+                                                                   .withDefaultFormat(JSON)
+                                                                   .withSupportedFormat(JSON))
+                                                .build();
+        return applicationPackage(description, "docker.52north.org/eopad/quality:latest");
+    }
+
+    /**
+     * Creates the specified number of NDVI-like application packages with distinct identifiers.
+     *
+     * @param count the number of application packages
+     * @return the application packages
+     */
+    static List<ApplicationPackage> applicationPackages(int count) {
+        ApplicationPackage[] applicationPackages = new ApplicationPackage[count];
+        for (int i = 0; i < count; ++i) {
+            applicationPackages[i] = i % 2 == 0 ? ndvi("ndvi-" + i) : quality("quality-" + i);
+        }
+        return Arrays.asList(applicationPackages);
+    }
+
+    static EncoderRepository encoderRepository() {
+        ProcessOfferingEncoder processOfferingEncoder = new ProcessOfferingEncoder();
+        EncoderRepository encoderRepository = new EncoderRepository();
+        encoderRepository.setEncoders(Arrays.<Encoder<?, ?>>asList(
+                processOfferingEncoder, new ApplicationPackageEncoder(processOfferingEncoder)));
+        encoderRepository.init();
+        return encoderRepository;
+    }
+
+    static CatalogEncoderImpl encoder(EncodingCache encodingCache) {
+        return new CatalogEncoderImpl(engine(Collections.emptySet()), encoderRepository(), encodingCache);
+    }
+
+    static CatalogConfiguration configuration(Collection<ApplicationPackage> applicationPackages) {
+        return configuration(CATALOG_URL, registry(repository(applicationPackages)));
+    }
+
+    static CatalogConfiguration configuration(String catalogUrl, ApplicationPackageRegistry registry) {
+        return new CatalogConfigurationImpl(new CatalogImpl(catalogUrl),
+                                            registry,
+                                            serviceMetadataRepository(),
+                                            new ServiceUrls(HttpUrl.get(SERVICE_URL)),
+                                            Locale.ENGLISH);
+    }
+
+    static Engine engine(Set<ProcessDescription> descriptions) {
+        return proxy(Engine.class, (name, args) -> {
+            switch (name) {
+                case "getProcessDescriptions":
+                    return descriptions;
+                case "getProcessDescription":
+                    return descriptions.stream().filter(d -> d.getId().equals(args[0])).findFirst();
+                default:
+                    throw new UnsupportedOperationException(name);
+            }
+        });
+    }
+
+    static ApplicationPackageRegistry registry(TransactionalAlgorithmRepository repository) {
+        return new ApplicationPackageRegistry(Collections.singleton(repository));
+    }
+
+    static TransactionalAlgorithmRepository repository(Collection<ApplicationPackage> applicationPackages) {
+        Map<String, ApplicationPackage> byId = new LinkedHashMap<>();
+        applicationPackages.forEach(ap -> byId.put(getIdentifier(ap), ap));
+        return repository(byId);
+    }
+
+    /**
+     * Creates a repository that is backed by the supplied map, so that changes of the map are visible to the
+     * repository.
+     *
+     * @param byId the application packages by identifier
+     * @return the repository
+     */
+    static TransactionalAlgorithmRepository repository(Map<String, ApplicationPackage> byId) {
+        Set<String> names = Collections.unmodifiableSet(byId.keySet());
+        return proxy(TransactionalAlgorithmRepository.class, (name, args) -> {
+            switch (name) {
+                case "getAlgorithmNames":
+                    return names;
+                case "getApplicationPackage":
+                    return Optional.ofNullable(byId.get(String.valueOf(args[0])));
+                default:
+                    throw new UnsupportedOperationException(name);
+            }
+        });
+    }
+
+    static OwsServiceMetadataRepository serviceMetadataRepository() {
+        OwsServiceIdentification serviceIdentification = new OwsServiceIdentification(
+                new OwsCode("WPS"), Collections.singleton("2.0.0"),
+                Collections.singleton(URI.create("http://www.opengis.net/spec/WPS/2.0/conf/service/profile")),
+                Collections.singleton("NONE"), Collections.singleton("NONE"),
+                new MultilingualString().addLocalization(Locale.ENGLISH, "javaPS EOPAD"),
+                new MultilingualString().addLocalization(Locale.ENGLISH, "Processing API for application packages"),
+                new LinkedHashSet<>(Arrays.asList(new OwsKeyword("WPS"), new OwsKeyword("EOPAD"),
+                                                  new OwsKeyword("Sentinel-2"))));
+        OwsContact contact = new OwsContact(null, new OwsAddress(Collections.emptyList(), "Münster", null, "48155",
+                                                                 "Germany",
+                                                                 Collections.singletonList("info@52north.org")),
+                                            new OwsOnlineResource(URI.create("https://52north.org/")), null, null);
+        OwsServiceProvider serviceProvider = new OwsServiceProvider(
+                "52°North GmbH", new OwsOnlineResource(URI.create("https://52north.org/")),
+                new OwsResponsibleParty("Jane Doe", "52°North GmbH", null, contact, null));
+        return new OwsServiceMetadataRepository() {
+            @Override
+            public LocalizedProducer<OwsServiceIdentification> getServiceIdentificationFactory(String service) {
+                return producer(serviceIdentification);
+            }
+
+            @Override
+            public LocalizedProducer<OwsServiceProvider> getServiceProviderFactory(String service) {
+                return producer(serviceProvider);
+            }
+
+            @Override
+            public Set<Locale> getAvailableLocales() {
+                return Collections.singleton(Locale.ENGLISH);
+            }
+        };
+    }
+
+    static String getIdentifier(ApplicationPackage applicationPackage) {
+        return applicationPackage.getProcessDescription().getProcessDescription().getId().getValue();
+    }
+
+    private static <T> LocalizedProducer<T> producer(T value) {
+        return new LocalizedProducer<T>() {
+            @Override
+            public T get() {
+                return value;
+            }
+
+            @Override
+            public T get(Locale locale) {
+                return value;
+            }
+
+            @Override
+            public Set<Locale> getAvailableLocales() {
+                return Collections.singleton(Locale.ENGLISH);
+            }
+        };
+    }
+
+    private static ApplicationPackage applicationPackage(ProcessDescription description, String image) {
+        DockerExecutionUnit executionUnit = new DockerExecutionUnit();
+        executionUnit.setImage(image);
+        Map<String, String> environment = new LinkedHashMap<>();
+        environment.put("SNAP_HOME", "/opt/snap");
+        environment.put("JAVA_OPTS", "-Xmx4g");
+        executionUnit.setEnvironment(environment);
+        ApplicationPackage applicationPackage = new ApplicationPackage();
+        applicationPackage.setProcessDescription(new ProcessOffering(description));
+        applicationPackage.setExecutionUnits(Collections.singletonList(executionUnit));
+        applicationPackage.setImmediateDeployment(true);
+        applicationPackage.setDeploymentProfileName(URI.create(DOCKERIZED_APPLICATION));
+        return applicationPackage;
+    }
+
+    private static ProcessInputDescription product(String id) {
+        return FACTORY.complexInput()
+                      .withIdentifier(id)
+                      .withTitle("Sentinel-2 Level-1C product")
+                      .withMinimalOccurence(1)
+                      .withMaximalOccurence(1)
+                      .withDefaultFormat(ZIP)
+                      .withSupportedFormat(ZIP)
+                      .build();
+    }
+
+    private static LiteralInputDescription band(String id, String value) {
+        return FACTORY.literalInput()
+                      .withIdentifier(id)
+                      .withTitle(String.format("Band %s", value))
+                      .withMinimalOccurence(0)
+                      .withMaximalOccurence(1)
+                      .withDefaultLiteralDataDomain(FACTORY.literalDataDomain()
+                                                           .withDataType("string")
+                                                           .withDefaultValue(value))
+                      .build();
+    }
+
+    private static LiteralInputDescription threshold(String id) {
+        return FACTORY.literalInput()
+                      .withIdentifier(id)
+                      .withTitle(id.replace('_', ' '))
+                      .withMinimalOccurence(0)
+                      .withMaximalOccurence(1)
+                      .withDefaultLiteralDataDomain(FACTORY.literalDataDomain()
+                                                           .withDataType("double")
+                                                           .withDefaultValue("0.5"))
+                      .build();
+    }
+
+    private static ProcessOutputDescription raster(String id) {
+        return FACTORY.complexOutput()
+                      .withIdentifier(id)
+                      .withTitle("Result raster")
+                      .withDefaultFormat(GEOTIFF)
+                      .withSupportedFormat(GEOTIFF)
+                      .build();
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T proxy(Class<T> type, Handler handler) {
+        return (T) Proxy.newProxyInstance(Fixtures.class.getClassLoader(), new Class<?>[] { type },
+                                          (proxy, method, args) -> handler.handle(method.getName(), args));
+    }
+
+    @FunctionalInterface
+    private interface Handler {
+        Object handle(String name, Object[] args);
+    }
+
+    /**
+     * Encodes process offerings similar to the JSON encoding of the OGC API - Processes.
+     */
+    static class ProcessOfferingEncoder extends JSONEncoder<ProcessOffering> {
+        ProcessOfferingEncoder() {
+            super(ProcessOffering.class);
+        }
+
+        @Override
+        public JsonNode encodeJSON(ProcessOffering offering) {
+            ProcessDescription description = offering.getProcessDescription();
+            ObjectNode process = nodeFactory().objectNode();
+            process.put("id", description.getId().getValue())
+                   .put("title", description.getTitle().getValue())
+                   .put("version", description.getVersion());
+            description.getAbstract().ifPresent(value -> process.put("description", value.getValue()));
+            ArrayNode keywords = process.putArray("keywords");
+            description.getKeywords().forEach(keyword -> keywords.add(keyword.getKeyword().getValue()));
+            ArrayNode inputs = process.putArray("inputs");
+            description.getInputDescriptions().forEach(input -> inputs.add(encodeInput(input)));
+            ArrayNode outputs = process.putArray("outputs");
+            description.getOutputDescriptions().forEach(output -> outputs.add(encodeOutput(output)));
+            ObjectNode root = nodeFactory().objectNode();
+            root.set("process", process);
+            root.putArray("jobControlOptions").add("async-execute").add("sync-execute");
+            root.putArray("outputTransmission").add("value").add("reference");
+            return root;
+        }
+
+        private ObjectNode encodeInput(ProcessInputDescription input) {
+            ObjectNode node = nodeFactory().objectNode()
+                                           .put("id", input.getId().getValue())
+                                           .put("title", input.getTitle().getValue())
+                                           .put("minOccurs", input.getOccurence().getMin())
+                                           .put("maxOccurs", input.getOccurence().getMax()
+                                                                  .map(String::valueOf).orElse("unbounded"));
+            encodeFormats(node.putObject("input"), input);
+            return node;
+        }
+
+        private ObjectNode encodeOutput(ProcessOutputDescription output) {
+            ObjectNode node = nodeFactory().objectNode()
+                                           .put("id", output.getId().getValue())
+                                           .put("title", output.getTitle().getValue());
+            encodeFormats(node.putObject("output"), output);
+            return node;
+        }
+
+        private void encodeFormats(ObjectNode node, Object description) {
+            if (description instanceof ComplexDescription) {
+                ArrayNode formats = node.putArray("formats");
+                ComplexDescription complex = (ComplexDescription) description;
+                complex.getSupportedFormats().forEach(format -> {
+                    ObjectNode f = formats.addObject().put("default", format.equals(complex.getDefaultFormat()));
+                    format.getMimeType().ifPresent(mimeType -> f.put("mimeType", mimeType));
+                });
+            } else if (description instanceof LiteralInputDescription) {
+                ((LiteralInputDescription) description).getDefaultLiteralDataDomain().getDefaultValue()
+                        .ifPresent(value -> node.putObject("literalDataDomain")
+                                                .put("defaultValue", value.getValue()));
+            }
+        }
+    }
+
+    /**
+     * Encodes application packages similar to the EOPAD JSON encoding.
+     */
+    static class ApplicationPackageEncoder extends JSONEncoder<ApplicationPackage> {
+        private final ProcessOfferingEncoder processOfferingEncoder;
+
+        ApplicationPackageEncoder(ProcessOfferingEncoder processOfferingEncoder) {
+            super(ApplicationPackage.class);
+            this.processOfferingEncoder = processOfferingEncoder;
+        }
+
+        @Override
+        public JsonNode encodeJSON(ApplicationPackage applicationPackage) {
+            ObjectNode root = nodeFactory().objectNode();
+            root.set("processDescription", processOfferingEncoder.encodeJSON(
+                    applicationPackage.getProcessDescription()));
+            ArrayNode executionUnits = root.putArray("executionUnit");
+            applicationPackage.getExecutionUnits().forEach(executionUnit -> {
+                ObjectNode unit = executionUnits.addObject().putObject("unit").put("type", executionUnit.getType());
+                if (executionUnit instanceof DockerExecutionUnit) {
+                    DockerExecutionUnit docker = (DockerExecutionUnit) executionUnit;
+                    unit.put("image", docker.getImage());
+                    ObjectNode environment = unit.putObject("environment");
+                    docker.getEnvironment().forEach(environment::put);
+                }
+            });
+            root.put("immediateDeployment", applicationPackage.getImmediateDeployment());
+            root.put("deploymentProfileName", applicationPackage.getDeploymentProfileName().toString());
+            return root;
+        }
+    }
+}
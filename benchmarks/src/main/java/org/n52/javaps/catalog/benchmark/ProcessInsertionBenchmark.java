@@ -0,0 +1,79 @@
+/*
+ * Copyright 2019-2020 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.n52.javaps.catalog.benchmark;
+
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.n52.javaps.catalog.CatalogConfiguration;
+import org.n52.javaps.catalog.CatalogEncoderImpl;
+import org.n52.javaps.catalog.EncodingCache;
+import org.n52.shetland.ogc.wps.ap.ApplicationPackage;
+import org.n52.svalbard.encode.exception.EncodingException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks the creation of the catalog record of a single application package, with and without a cached
+ * encoding of the application package.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ProcessInsertionBenchmark {
+    @Param({ "ndvi", "quality" })
+    private String applicationPackageType;
+    private EncodingCache encodingCache;
+    private CatalogEncoderImpl encoder;
+    private CatalogConfiguration configuration;
+    private ApplicationPackage applicationPackage;
+
+    @Setup
+    public void setup() {
+        this.applicationPackage = "ndvi".equals(applicationPackageType)
+                                  ? Fixtures.ndvi("ndvi")
+                                  : Fixtures.quality("quality");
+        this.encodingCache = new EncodingCache();
+        this.encoder = Fixtures.encoder(encodingCache);
+        this.configuration = Fixtures.configuration(Collections.singleton(applicationPackage));
+    }
+
+    @Benchmark
+    public ObjectNode createProcessInsertion() throws EncodingException {
+        return encoder.createProcessInsertion(applicationPackage, configuration);
+    }
+
+    @Benchmark
+    public ObjectNode createProcessInsertionUncached() throws EncodingException {
+        // the same invalidation as for a re-registered application package
+        encodingCache.onRegister(applicationPackage);
+        return encoder.createProcessInsertion(applicationPackage, configuration);
+    }
+}
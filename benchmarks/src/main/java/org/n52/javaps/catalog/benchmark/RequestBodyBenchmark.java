@@ -0,0 +1,82 @@
+/*
+ * Copyright 2019-2020 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.n52.javaps.catalog.benchmark;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import okhttp3.RequestBody;
+import okio.Buffer;
+import org.n52.javaps.catalog.EncodingCache;
+import org.n52.javaps.catalog.MediaTypes;
+import org.n52.javaps.catalog.http.JsonRequestBody;
+import org.n52.svalbard.encode.exception.EncodingException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks the serialization of a service description into a request body. {@link #streaming()} is what the
+ * catalog client does; {@link #string()} serializes to an intermediate {@code String} first and serves as a
+ * baseline. The sink is cleared after every invocation, so only the serialization itself allocates.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RequestBodyBenchmark {
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    @Param({ "10", "100", "1000" })
+    private int processes;
+    private JsonNode content;
+    private final Buffer sink = new Buffer();
+
+    @Setup
+    public void setup() throws EncodingException {
+        this.content = Fixtures.encoder(new EncodingCache())
+                               .createServiceInsertion(Fixtures.configuration(Fixtures.applicationPackages(processes)));
+    }
+
+    @Benchmark
+    public long streaming() throws IOException {
+        return writeTo(new JsonRequestBody(content, MediaTypes.APPLICATION_GEO_JSON_TYPE));
+    }
+
+    @Benchmark
+    public long string() throws IOException {
+        return writeTo(RequestBody.create(MAPPER.writeValueAsString(content), MediaTypes.APPLICATION_GEO_JSON_TYPE));
+    }
+
+    private long writeTo(RequestBody body) throws IOException {
+        body.writeTo(sink);
+        long size = sink.size();
+        sink.clear();
+        return size;
+    }
+}
@@ -0,0 +1,365 @@
+/*
+ * Copyright 2019-2020 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.n52.javaps.catalog.benchmark;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import okhttp3.HttpUrl;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.RecordedRequest;
+import org.n52.javaps.catalog.JsonConstants;
+import org.n52.javaps.catalog.MediaTypes;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * {@link Dispatcher} for a {@code MockWebServer} that implements the {@code /services} and {@code /services/{id}}
+ * contract used by {@link org.n52.javaps.catalog.CatalogImpl}. Records are kept in memory and carry a strong
+ * {@code ETag}. The bulk endpoint {@code /services/_bulk} of the {@link org.n52.javaps.catalog.BulkCatalogTransport}
+ * is supported as well. Latency, the rate of transient errors and the response to updates of unknown records can be
+ * configured.
+ */
+class StandInCatalog extends Dispatcher {
+    private static final String SERVICES = "services";
+    private static final String BULK = "_bulk";
+    private static final String INDEX = "index";
+    private static final String DELETE_ACTION = "delete";
+    private static final String BULK_ID = "_id";
+    private static final String STATUS = "status";
+    private static final String ETAG = "ETag";
+    private static final String IF_MATCH = "If-Match";
+    private static final String IF_NONE_MATCH = "If-None-Match";
+    private static final String START_INDEX = "startIndex";
+    private static final String HEAD = "HEAD";
+    private static final String GET = "GET";
+    private static final String PUT = "PUT";
+    private static final String POST = "POST";
+    private static final String DELETE = "DELETE";
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final Map<String, Record> records = new ConcurrentHashMap<>();
+    private final Map<String, LongAdder> requests = new ConcurrentHashMap<>();
+    private final Map<Integer, LongAdder> responses = new ConcurrentHashMap<>();
+    private final AtomicLong versions = new AtomicLong();
+    private final Consumer<String> changeListener;
+    private volatile Duration latency = Duration.ZERO;
+    private volatile Duration jitter = Duration.ZERO;
+    private volatile double errorRate;
+    private volatile boolean notFoundOnUpdate = true;
+    private volatile boolean headSupported = true;
+    private volatile int pageSize = 100;
+
+    /**
+     * Creates a new catalog.
+     *
+     * @param changeListener notified with the identifier of every record that was written or deleted
+     */
+    StandInCatalog(Consumer<String> changeListener) {
+        this.changeListener = Objects.requireNonNull(changeListener);
+    }
+
+    /**
+     * Sets the fixed latency of every response.
+     *
+     * @param latency the latency
+     */
+    void setLatency(Duration latency) {
+        this.latency = Objects.requireNonNull(latency);
+    }
+
+    /**
+     * Sets the maximum random latency that is added to the fixed latency.
+     *
+     * @param jitter the jitter
+     */
+    void setJitter(Duration jitter) {
+        this.jitter = Objects.requireNonNull(jitter);
+    }
+
+    /**
+     * Sets the fraction of requests that fail with {@code 503}.
+     *
+     * @param errorRate the error rate between {@code 0} and {@code 1}
+     */
+    void setErrorRate(double errorRate) {
+        if (errorRate < 0 || errorRate > 1) {
+            throw new IllegalArgumentException("invalid error rate: " + errorRate);
+        }
+        this.errorRate = errorRate;
+    }
+
+    /**
+     * Sets whether updates of unknown records are rejected with {@code 404} (like the GMU catalog) or insert the
+     * record.
+     *
+     * @param notFoundOnUpdate if updates of unknown records should be rejected
+     */
+    void setNotFoundOnUpdate(boolean notFoundOnUpdate) {
+        this.notFoundOnUpdate = notFoundOnUpdate;
+    }
+
+    /**
+     * Sets whether {@code HEAD} requests are supported or answered with {@code 405}.
+     *
+     * @param headSupported if {@code HEAD} requests are supported
+     */
+    void setHeadSupported(boolean headSupported) {
+        this.headSupported = headSupported;
+    }
+
+    void setPageSize(int pageSize) {
+        if (pageSize < 1) {
+            throw new IllegalArgumentException("invalid page size: " + pageSize);
+        }
+        this.pageSize = pageSize;
+    }
+
+    /**
+     * Get the number of requests by HTTP method.
+     *
+     * @return the number of requests
+     */
+    Map<String, Long> getRequests() {
+        return snapshot(requests);
+    }
+
+    /**
+     * Get the number of responses by status code.
+     *
+     * @return the number of responses
+     */
+    Map<Integer, Long> getResponses() {
+        return snapshot(responses);
+    }
+
+    long getRequestCount() {
+        return requests.values().stream().mapToLong(LongAdder::sum).sum();
+    }
+
+    int size() {
+        return records.size();
+    }
+
+    @Override
+    public MockResponse dispatch(RecordedRequest request) {
+        String method = request.getMethod();
+        requests.computeIfAbsent(method, m -> new LongAdder()).increment();
+        return handle(request, method).setHeadersDelay(getDelay(), TimeUnit.MILLISECONDS);
+    }
+
+    private MockResponse handle(RecordedRequest request, String method) {
+        if (errorRate > 0 && ThreadLocalRandom.current().nextDouble() < errorRate) {
+            return status(503);
+        }
+        HttpUrl url = request.getRequestUrl();
+        List<String> segments = url == null ? Collections.emptyList() : url.pathSegments();
+        int index = segments.lastIndexOf(SERVICES);
+        if (index < 0 || index < segments.size() - 2) {
+            return status(404);
+        }
+        if (index == segments.size() - 1) {
+            switch (method) {
+                case GET:
+                    return list(url);
+                case POST:
+                    return insert(request);
+                default:
+                    return status(405);
+            }
+        }
+        String id = segments.get(index + 1);
+        if (BULK.equals(id) && POST.equals(method)) {
+            return bulk(request);
+        }
+        switch (method) {
+            case HEAD:
+                return headSupported ? get(request, id, false) : status(405);
+            case GET:
+                return get(request, id, true);
+            case PUT:
+                return update(request, id);
+            case DELETE:
+                return delete(id);
+            default:
+                return status(405);
+        }
+    }
+
+    private MockResponse get(RecordedRequest request, String id, boolean withBody) {
+        Record record = records.get(id);
+        if (record == null) {
+            return status(404);
+        }
+        if (record.etag.equals(request.getHeader(IF_NONE_MATCH))) {
+            return status(304).setHeader(ETAG, record.etag);
+        }
+        MockResponse response = status(200).setHeader(ETAG, record.etag);
+        return withBody ? response.setHeader("Content-Type", MediaTypes.APPLICATION_GEO_JSON).setBody(record.body)
+                        : response;
+    }
+
+    private MockResponse insert(RecordedRequest request) {
+        String body = request.getBody().readUtf8();
+        String id = getIdentifier(body);
+        if (id == null) {
+            return status(400);
+        }
+        Record record = new Record(body, createETag());
+        if (records.putIfAbsent(id, record) != null) {
+            return status(409);
+        }
+        changeListener.accept(id);
+        return status(201).setHeader(ETAG, record.etag).setHeader("Location", request.getRequestUrl() + "/" + id);
+    }
+
+    private MockResponse update(RecordedRequest request, String id) {
+        String body = request.getBody().readUtf8();
+        String ifMatch = request.getHeader(IF_MATCH);
+        Record record = new Record(body, createETag());
+        Record previous = records.compute(id, (key, current) -> isUpdatable(current, ifMatch) ? record : current);
+        if (previous != record) {
+            return status(previous == null ? 404 : 412);
+        }
+        changeListener.accept(id);
+        return status(200).setHeader(ETAG, record.etag);
+    }
+
+    private boolean isUpdatable(Record current, String ifMatch) {
+        if (current == null) {
+            return !notFoundOnUpdate;
+        }
+        return ifMatch == null || current.etag.equals(ifMatch);
+    }
+
+    private MockResponse delete(String id) {
+        Record removed = records.remove(id);
+        changeListener.accept(id);
+        return status(removed == null ? 404 : 204);
+    }
+
+    private MockResponse bulk(RecordedRequest request) {
+        String[] lines = request.getBody().readUtf8().split("\n");
+        ObjectNode result = objectMapper.createObjectNode();
+        ArrayNode items = result.putArray("items");
+        boolean errors = false;
+        try {
+            for (int i = 0; i < lines.length; ++i) {
+                if (lines[i].isEmpty()) {
+                    continue;
+                }
+                JsonNode action = objectMapper.readTree(lines[i]);
+                if (action.has(INDEX) && i + 1 < lines.length) {
+                    String id = action.path(INDEX).path(BULK_ID).textValue();
+                    Record previous = records.put(id, new Record(lines[++i], createETag()));
+                    changeListener.accept(id);
+                    items.addObject().putObject(INDEX).put(BULK_ID, id).put(STATUS, previous == null ? 201 : 200);
+                } else if (action.has(DELETE_ACTION)) {
+                    String id = action.path(DELETE_ACTION).path(BULK_ID).textValue();
+                    Record removed = records.remove(id);
+                    changeListener.accept(id);
+                    errors |= removed == null;
+                    items.addObject().putObject(DELETE_ACTION).put(BULK_ID, id)
+                         .put(STATUS, removed == null ? 404 : 200);
+                } else {
+                    return status(400);
+                }
+            }
+        } catch (IOException e) {
+            return status(400);
+        }
+        result.put("errors", errors);
+        return status(200).setHeader("Content-Type", MediaTypes.APPLICATION_JSON).setBody(result.toString());
+    }
+
+    private MockResponse list(HttpUrl url) {
+        String startIndexParameter = url.queryParameter(START_INDEX);
+        int startIndex = startIndexParameter == null ? 0 : Integer.parseInt(startIndexParameter);
+        List<String> identifiers = new ArrayList<>(records.keySet());
+        Collections.sort(identifiers);
+        ObjectNode collection = objectMapper.createObjectNode().put(JsonConstants.TYPE, "FeatureCollection");
+        ArrayNode features = collection.putArray(JsonConstants.FEATURES);
+        int endIndex = Math.min(identifiers.size(), startIndex + pageSize);
+        for (String id : identifiers.subList(Math.min(startIndex, endIndex), endIndex)) {
+            features.addObject().put(JsonConstants.ID, id)
+                    .putObject(JsonConstants.PROPERTIES).put(JsonConstants.IDENTIFIER, id);
+        }
+        if (endIndex < identifiers.size()) {
+            collection.putArray(JsonConstants.LINKS).addObject()
+                      .put(JsonConstants.REL, JsonConstants.NEXT)
+                      .put(JsonConstants.HREF, url.newBuilder().setQueryParameter(START_INDEX,
+                                                                                  String.valueOf(endIndex))
+                                                  .build().toString());
+        }
+        return status(200).setHeader("Content-Type", MediaTypes.APPLICATION_GEO_JSON)
+                          .setBody(collection.toString());
+    }
+
+    private String getIdentifier(String body) {
+        try {
+            JsonNode node = objectMapper.readTree(body);
+            return node.path(JsonConstants.PROPERTIES).path(JsonConstants.IDENTIFIER).textValue();
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    private String createETag() {
+        return String.format("\"%d\"", versions.incrementAndGet());
+    }
+
+    private long getDelay() {
+        long delay = latency.toMillis();
+        long maxJitter = jitter.toMillis();
+        return maxJitter > 0 ? delay + ThreadLocalRandom.current().nextLong(maxJitter + 1) : delay;
+    }
+
+    private MockResponse status(int code) {
+        responses.computeIfAbsent(code, c -> new LongAdder()).increment();
+        return new MockResponse().setResponseCode(code);
+    }
+
+    private static <K> Map<K, Long> snapshot(Map<K, LongAdder> counters) {
+        Map<K, Long> snapshot = new TreeMap<>();
+        counters.forEach((key, counter) -> snapshot.put(key, counter.sum()));
+        return snapshot;
+    }
+
+    private static final class Record {
+        private final String body;
+        private final String etag;
+
+        Record(String body, String etag) {
+            this.body = body;
+            this.etag = etag;
+        }
+    }
+}
@@ -0,0 +1,174 @@
+/*
+ * Copyright 2019-2020 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.n52.javaps.catalog;
+
+import org.n52.javaps.transactional.TransactionalAlgorithmRepository;
+import org.n52.javaps.transactional.TransactionalAlgorithmRepositoryListener;
+import org.n52.shetland.ogc.wps.ap.ApplicationPackage;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Stream;
+
+/**
+ * Registry of the application packages of all {@link TransactionalAlgorithmRepository transactional repositories}.
+ * The repositories are only iterated once, afterwards the registry is kept up to date by the repository callbacks.
+ * Readers get an immutable {@link Snapshot}; every change creates a new snapshot with a higher version.
+ * <p>
+ * The callbacks are idempotent, so that listeners that depend on the registry can apply an event to it before they
+ * handle it themselves, regardless of whether the repository already notified the registry.
+ */
+@Component
+public class ApplicationPackageRegistry implements TransactionalAlgorithmRepositoryListener {
+    private Set<TransactionalAlgorithmRepository> repositories = Collections.emptySet();
+    private volatile Snapshot snapshot;
+
+    public ApplicationPackageRegistry() {
+    }
+
+    public ApplicationPackageRegistry(Set<TransactionalAlgorithmRepository> repositories) {
+        this.repositories = Objects.requireNonNull(repositories);
+    }
+
+    @Autowired(required = false)
+    public void setRepositories(Set<TransactionalAlgorithmRepository> repositories) {
+        this.repositories = Optional.ofNullable(repositories).orElseGet(Collections::emptySet);
+    }
+
+    /**
+     * Get the current snapshot of the registered application packages.
+     *
+     * @return the snapshot
+     */
+    public Snapshot getSnapshot() {
+        Snapshot current = this.snapshot;
+        if (current == null) {
+            synchronized (this) {
+                current = this.snapshot;
+                if (current == null) {
+                    current = load();
+                    this.snapshot = current;
+                }
+            }
+        }
+        return current;
+    }
+
+    @Override
+    public synchronized void onRegister(ApplicationPackage applicationPackage) {
+        if (snapshot == null) {
+            // the repository already contains it
+            return;
+        }
+        String id = getIdentifier(applicationPackage);
+        if (snapshot.applicationPackages.get(id) == applicationPackage) {
+            // already applied
+            return;
+        }
+        Map<String, ApplicationPackage> applicationPackages = new LinkedHashMap<>(snapshot.applicationPackages);
+        applicationPackages.put(id, applicationPackage);
+        snapshot = new Snapshot(snapshot.version + 1, applicationPackages);
+    }
+
+    @Override
+    public synchronized void onUnregister(ApplicationPackage applicationPackage) {
+        if (snapshot == null || !snapshot.applicationPackages.containsKey(getIdentifier(applicationPackage))) {
+            return;
+        }
+        Map<String, ApplicationPackage> applicationPackages = new LinkedHashMap<>(snapshot.applicationPackages);
+        applicationPackages.remove(getIdentifier(applicationPackage));
+        snapshot = new Snapshot(snapshot.version + 1, applicationPackages);
+    }
+
+    private Snapshot load() {
+        Map<String, ApplicationPackage> applicationPackages = new LinkedHashMap<>();
+        for (TransactionalAlgorithmRepository repository : repositories) {
+            for (String name : repository.getAlgorithmNames()) {
+                repository.getApplicationPackage(name)
+                          .ifPresent(applicationPackage -> applicationPackages.put(getIdentifier(applicationPackage),
+                                                                                   applicationPackage));
+            }
+        }
+        return new Snapshot(0, applicationPackages);
+    }
+
+    private static String getIdentifier(ApplicationPackage applicationPackage) {
+        return applicationPackage.getProcessDescription().getProcessDescription().getId().getValue();
+    }
+
+    /**
+     * Immutable view of the registered application packages.
+     */
+    public static final class Snapshot implements Iterable<ApplicationPackage> {
+        private final long version;
+        private final Map<String, ApplicationPackage> applicationPackages;
+        private final List<ApplicationPackage> list;
+
+        Snapshot(long version, Map<String, ApplicationPackage> applicationPackages) {
+            this.version = version;
+            this.applicationPackages = Collections.unmodifiableMap(applicationPackages);
+            this.list = Collections.unmodifiableList(new ArrayList<>(applicationPackages.values()));
+        }
+
+        /**
+         * Get the version of this snapshot. Later snapshots of the same registry have higher versions.
+         *
+         * @return the version
+         */
+        public long getVersion() {
+            return version;
+        }
+
+        public List<ApplicationPackage> getApplicationPackages() {
+            return list;
+        }
+
+        public Optional<ApplicationPackage> getApplicationPackage(String id) {
+            return Optional.ofNullable(applicationPackages.get(id));
+        }
+
+        public Set<String> getIdentifiers() {
+            return applicationPackages.keySet();
+        }
+
+        public boolean contains(String id) {
+            return applicationPackages.containsKey(id);
+        }
+
+        public int size() {
+            return list.size();
+        }
+
+        public Stream<ApplicationPackage> stream() {
+            return list.stream();
+        }
+
+        @Override
+        public Iterator<ApplicationPackage> iterator() {
+            return list.iterator();
+        }
+    }
+}
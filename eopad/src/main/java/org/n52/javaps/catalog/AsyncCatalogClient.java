@@ -0,0 +1,45 @@
+/*
+ * Copyright 2019-2020 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.n52.javaps.catalog;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Non-blocking variant of {@link CatalogClient}. The returned futures complete on the HTTP client's dispatcher
+ * threads; failures are reported as exceptional completion with an {@link java.io.IOException} as cause.
+ */
+public interface AsyncCatalogClient {
+    CompletableFuture<Void> updateOrInsertAsync(JsonNode node);
+
+    CompletableFuture<Void> deleteAsync(String id);
+
+    CompletableFuture<Void> updateAsync(JsonNode content);
+
+    CompletableFuture<Void> insertAsync(JsonNode content);
+
+    CompletableFuture<Boolean> existsAsync(String id);
+
+    /**
+     * Lists the identifiers of all records in the catalog, following the {@code next} links of paged responses.
+     *
+     * @return the identifiers
+     */
+    CompletableFuture<Set<String>> getIdentifiersAsync();
+}
@@ -0,0 +1,119 @@
+/*
+ * Copyright 2019-2020 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.n52.javaps.catalog;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Base class for {@link CatalogTransport}s that send several changes with a single request. Batches are limited by
+ * the number of changes and the size of their serialized content; a single change that exceeds the size limit is sent
+ * on its own. A batch never contains more than one change of the same record.
+ */
+public abstract class BatchingCatalogTransport implements CatalogTransport {
+    private final int maxRecords;
+    private final long maxBytes;
+
+    protected BatchingCatalogTransport(int maxRecords, long maxBytes) {
+        if (maxRecords < 1) {
+            throw new IllegalArgumentException("invalid batch size: " + maxRecords);
+        }
+        if (maxBytes < 1) {
+            throw new IllegalArgumentException("invalid batch byte limit: " + maxBytes);
+        }
+        this.maxRecords = maxRecords;
+        this.maxBytes = maxBytes;
+    }
+
+    public int getMaxRecords() {
+        return maxRecords;
+    }
+
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+
+    @Override
+    public List<List<CatalogChange>> partition(List<CatalogChange> changes) {
+        List<List<CatalogChange>> batches = new ArrayList<>();
+        List<CatalogChange> batch = new ArrayList<>();
+        Set<String> identifiers = new HashSet<>();
+        long bytes = 0;
+        for (CatalogChange change : changes) {
+            long size = getSize(change);
+            if (!batch.isEmpty() && (batch.size() >= maxRecords || bytes + size > maxBytes ||
+                                     identifiers.contains(change.getId()))) {
+                batches.add(batch);
+                batch = new ArrayList<>();
+                identifiers.clear();
+                bytes = 0;
+            }
+            batch.add(change);
+            identifiers.add(change.getId());
+            bytes += size;
+        }
+        if (!batch.isEmpty()) {
+            batches.add(batch);
+        }
+        return batches;
+    }
+
+    @Override
+    public List<CompletableFuture<Void>> send(List<CatalogChange> batch) {
+        List<CompletableFuture<Void>> futures = new ArrayList<>(batch.size());
+        for (int i = 0; i < batch.size(); ++i) {
+            futures.add(new CompletableFuture<>());
+        }
+        sendBatch(batch).whenComplete((failures, t) -> {
+            for (int i = 0; i < batch.size(); ++i) {
+                IOException failure = t == null ? failures.get(batch.get(i).getId()) : null;
+                if (t != null) {
+                    futures.get(i).completeExceptionally(Futures.unwrap(t));
+                } else if (failure != null) {
+                    futures.get(i).completeExceptionally(failure);
+                } else {
+                    futures.get(i).complete(null);
+                }
+            }
+        });
+        return futures;
+    }
+
+    /**
+     * Get the number of bytes a change contributes to the size of a batch.
+     *
+     * @param change the change
+     * @return the size
+     */
+    protected long getSize(CatalogChange change) {
+        return change.getEncodedContent().length;
+    }
+
+    /**
+     * Sends the batch with a single request.
+     *
+     * @param batch the batch
+     * @return the future of the failures of single changes, keyed by record identifier; completes exceptionally if
+     *         the request as a whole failed
+     */
+    protected abstract CompletableFuture<Map<String, IOException>> sendBatch(List<CatalogChange> batch);
+}
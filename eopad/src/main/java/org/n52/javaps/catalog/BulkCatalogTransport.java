@@ -0,0 +1,186 @@
+/*
+ * Copyright 2019-2020 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.n52.javaps.catalog;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import okhttp3.HttpUrl;
+import okhttp3.MediaType;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import okio.BufferedSink;
+import org.n52.janmayen.http.HTTPHeaders;
+import org.n52.javaps.catalog.http.CatalogOperation;
+import org.n52.javaps.catalog.http.ResponseFuture;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
+
+/**
+ * {@link CatalogTransport} for catalogs that offer a bulk endpoint at {@code services/_bulk} in the newline delimited
+ * JSON format of Elasticsearch/OpenSearch. Every upsert is sent as an {@code index} action followed by the record,
+ * every deletion as a {@code delete} action:
+ * <pre>
+ * {"index":{"_id":"process-1"}}
+ * {"type":"Feature",...}
+ * {"delete":{"_id":"process-2"}}
+ * </pre>
+ * The response has to contain an item with the {@code _id} and {@code status} of every action. Deletions of unknown
+ * records ({@code 404}) are considered successful.
+ */
+public class BulkCatalogTransport extends BatchingCatalogTransport {
+    private static final String BULK = "_bulk";
+    private static final String INDEX = "index";
+    private static final String DELETE = "delete";
+    private static final String ITEMS = "items";
+    private static final String ID = "_id";
+    private static final String STATUS = "status";
+    private static final String ERROR = "error";
+    private static final int NOT_FOUND = 404;
+    private static final byte NEWLINE = '\n';
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final OkHttpClient client;
+    private final ResilientCatalogClient resilience;
+    private final HttpUrl url;
+
+    /**
+     * Creates a new transport.
+     *
+     * @param config     the catalog configuration
+     * @param client     the HTTP client
+     * @param resilience the client whose retry policy and circuit breaker are applied to the bulk requests, may be
+     *                   {@code null}
+     * @param maxRecords the maximum number of changes per request
+     * @param maxBytes   the maximum size of the records per request
+     */
+    public BulkCatalogTransport(CatalogConfiguration config, OkHttpClient client, ResilientCatalogClient resilience,
+                                int maxRecords, long maxBytes) {
+        super(maxRecords, maxBytes);
+        this.client = Objects.requireNonNull(client);
+        this.resilience = resilience;
+        this.url = config.getCatalog().getURL().newBuilder().addPathSegment(BULK).build();
+    }
+
+    @Override
+    protected CompletableFuture<Map<String, IOException>> sendBatch(List<CatalogChange> batch) {
+        Request request = new Request.Builder().post(new BulkRequestBody(createLines(batch))).url(url)
+                                               .tag(CatalogOperation.class, CatalogOperation.BATCH)
+                                               .addHeader(HTTPHeaders.ACCEPT, MediaTypes.APPLICATION_JSON)
+                                               .build();
+        Supplier<CompletableFuture<Map<String, IOException>>> attempt
+                = () -> ResponseFuture.enqueue(client.newCall(request), response -> checkBulk(response, batch));
+        return resilience == null ? attempt.get() : resilience.execute(attempt);
+    }
+
+    private List<byte[]> createLines(List<CatalogChange> batch) {
+        List<byte[]> lines = new ArrayList<>(batch.size() * 2);
+        for (CatalogChange change : batch) {
+            boolean delete = change.getType() == CatalogChange.Type.DELETE;
+            ObjectNode action = objectMapper.createObjectNode();
+            action.putObject(delete ? DELETE : INDEX).put(ID, change.getId());
+            lines.add(action.toString().getBytes(StandardCharsets.UTF_8));
+            if (!delete) {
+                // serialized without line breaks
+                lines.add(change.getEncodedContent());
+            }
+        }
+        return lines;
+    }
+
+    private Map<String, IOException> checkBulk(Response response, List<CatalogChange> batch) throws IOException {
+        ResponseBody body = response.body();
+        if (!response.isSuccessful() || body == null) {
+            String message = body == null ? null : body.string();
+            throw new CatalogException(response.code(),
+                                       String.format("service responded with %d: %s", response.code(), message));
+        }
+        JsonNode result = objectMapper.readTree(body.byteStream());
+        Map<String, IOException> failures = new HashMap<>();
+        Set<String> confirmed = new HashSet<>();
+        for (JsonNode item : result.path(ITEMS)) {
+            // every item has the action as its only field
+            Iterator<Map.Entry<String, JsonNode>> fields = item.fields();
+            if (!fields.hasNext()) {
+                continue;
+            }
+            Map.Entry<String, JsonNode> field = fields.next();
+            JsonNode outcome = field.getValue();
+            String id = outcome.path(ID).textValue();
+            if (id == null) {
+                continue;
+            }
+            confirmed.add(id);
+            int status = outcome.path(STATUS).asInt();
+            boolean alreadyDeleted = status == NOT_FOUND && DELETE.equals(field.getKey());
+            if (!alreadyDeleted && (status < 200 || status >= 300)) {
+                failures.put(id, new CatalogException(status, String.format("%s of %s failed with %d: %s",
+                                                                            field.getKey(), id, status,
+                                                                            outcome.path(ERROR))));
+            }
+        }
+        for (CatalogChange change : batch) {
+            if (!confirmed.contains(change.getId())) {
+                failures.put(change.getId(), new IOException(String.format("no result for %s", change.getId())));
+            }
+        }
+        return failures;
+    }
+
+    /**
+     * Request body of the already serialized lines, so that the request can be written again for every attempt.
+     */
+    private static final class BulkRequestBody extends RequestBody {
+        private final List<byte[]> lines;
+        private final long contentLength;
+
+        BulkRequestBody(List<byte[]> lines) {
+            this.lines = lines;
+            this.contentLength = lines.stream().mapToLong(line -> line.length + 1).sum();
+        }
+
+        @Override
+        public MediaType contentType() {
+            return MediaTypes.APPLICATION_X_NDJSON_TYPE;
+        }
+
+        @Override
+        public long contentLength() {
+            return contentLength;
+        }
+
+        @Override
+        public void writeTo(BufferedSink sink) throws IOException {
+            for (byte[] line : lines) {
+                sink.write(line).writeByte(NEWLINE);
+            }
+        }
+    }
+}
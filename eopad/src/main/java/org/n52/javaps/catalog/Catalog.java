@@ -24,5 +24,21 @@ public interface Catalog {
 
     HttpUrl getURL(String id);
 
+    /**
+     * Creates the URL of the record with the specified identifier without caching it, e.g. for deletions.
+     *
+     * @param id the identifier
+     * @return the URL
+     */
+    HttpUrl createURL(String id);
+
     String getURL(ApplicationPackage applicationPackage);
+
+    /**
+     * Drops cached URLs of the record with the specified identifier.
+     *
+     * @param id the identifier
+     */
+    default void evict(String id) {
+    }
 }
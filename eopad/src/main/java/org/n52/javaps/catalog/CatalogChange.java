@@ -0,0 +1,95 @@
+/*
+ * Copyright 2019-2020 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.n52.javaps.catalog;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.UncheckedIOException;
+import java.util.Objects;
+
+/**
+ * A change of a single catalog record that is sent by a {@link CatalogTransport}.
+ */
+public final class CatalogChange {
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    private final Type type;
+    private final String id;
+    private final JsonNode content;
+    private volatile byte[] encodedContent;
+
+    private CatalogChange(Type type, String id, JsonNode content) {
+        this.type = Objects.requireNonNull(type);
+        this.id = Objects.requireNonNull(id);
+        this.content = content;
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    /**
+     * Get the content of the record.
+     *
+     * @return the content, {@code null} for deletions
+     */
+    public JsonNode getContent() {
+        return content;
+    }
+
+    /**
+     * Get the serialized content of the record. The content is serialized at most once, so transports that need the
+     * size of a change and its serialization do not encode it twice.
+     *
+     * @return the UTF-8 encoded JSON, an empty array for deletions
+     */
+    public byte[] getEncodedContent() {
+        byte[] encoded = this.encodedContent;
+        if (encoded == null) {
+            try {
+                encoded = content == null ? new byte[0] : MAPPER.writeValueAsBytes(content);
+            } catch (JsonProcessingException e) {
+                throw new UncheckedIOException(e);
+            }
+            this.encodedContent = encoded;
+        }
+        return encoded;
+    }
+
+    public static CatalogChange upsert(String id, JsonNode content) {
+        return new CatalogChange(Type.UPSERT, id, Objects.requireNonNull(content));
+    }
+
+    public static CatalogChange delete(String id) {
+        return new CatalogChange(Type.DELETE, id, null);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s{type=%s, id=%s}", getClass().getSimpleName(), type, id);
+    }
+
+    public enum Type {
+        UPSERT,
+        DELETE
+    }
+}
@@ -25,86 +25,350 @@ import okhttp3.RequestBody;
 import okhttp3.Response;
 import okhttp3.ResponseBody;
 import org.n52.janmayen.http.HTTPHeaders;
+import org.n52.javaps.catalog.http.CatalogOperation;
+import org.n52.javaps.catalog.http.JsonRequestBody;
+import org.n52.javaps.catalog.http.ResponseFuture;
+import org.n52.javaps.catalog.http.ResponseHandler;
 import org.n52.svalbard.coding.json.JSONConstants;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.HashSet;
+import java.util.Map;
 import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
 
-public class CatalogClientImpl implements CatalogClient {
+public class CatalogClientImpl implements CatalogClient, AsyncCatalogClient {
     private static final Logger LOG = LoggerFactory.getLogger(CatalogClientImpl.class);
+    private static final int MAX_LOGGED_BODY_LENGTH = 4096;
+    private static final int MAX_PAGES = 1000;
+    private static final String ETAG = "ETag";
+    private static final String LAST_MODIFIED = "Last-Modified";
+    private static final String IF_MATCH = "If-Match";
+    private static final String IF_NONE_MATCH = "If-None-Match";
+    private static final String IF_UNMODIFIED_SINCE = "If-Unmodified-Since";
+    private static final int NOT_MODIFIED = 304;
+    private static final int NOT_FOUND = 404;
+    private static final int METHOD_NOT_ALLOWED = 405;
+    private static final int PRECONDITION_FAILED = 412;
+    private static final int NOT_IMPLEMENTED = 501;
     private final ObjectMapper objectMapper = new ObjectMapper();
     private final OkHttpClient client;
     private final CatalogConfiguration config;
+    private final UpsertStrategy upsertStrategy;
+    private final Set<String> knownIdentifiers = ConcurrentHashMap.newKeySet();
+    private final AtomicLong savedRequests = new AtomicLong();
+    private final Map<String, Validators> validators = new ConcurrentHashMap<>();
+    private final Set<String> modifiedConcurrently = ConcurrentHashMap.newKeySet();
+    private volatile boolean headSupported = true;
 
     public CatalogClientImpl(CatalogConfiguration config, OkHttpClient client) {
+        this(config, client, UpsertStrategy.DEFAULT);
+    }
+
+    public CatalogClientImpl(CatalogConfiguration config, OkHttpClient client, UpsertStrategy upsertStrategy) {
         this.client = Objects.requireNonNull(client);
         this.config = Objects.requireNonNull(config);
+        this.upsertStrategy = Objects.requireNonNull(upsertStrategy);
+    }
+
+    /**
+     * Get the number of existence checks that were saved by the {@link UpsertStrategy}.
+     *
+     * @return the number of saved requests
+     */
+    public long getSavedRequests() {
+        return savedRequests.get();
     }
 
     @Override
     public void updateOrInsert(JsonNode node) throws IOException {
-        if (exists(getId(node))) {
-            update(node);
-        } else {
-            insert(node);
+        await(updateOrInsertAsync(node));
+    }
+
+    @Override
+    public CompletableFuture<Void> updateOrInsertAsync(JsonNode node) {
+        String id = getId(node);
+        if (modifiedConcurrently.contains(id)) {
+            // the validators are gone after a 412, an unchecked update would overwrite the concurrent change
+            return updateOrInsertWithCheck(node, id);
+        }
+        switch (upsertStrategy) {
+            case PUT_FIRST:
+                return updateOrInsertWithoutCheck(node, id);
+            case CACHED:
+                if (knownIdentifiers.contains(id)) {
+                    return updateOrInsertWithoutCheck(node, id);
+                }
+                return updateOrInsertWithCheck(node, id);
+            case EXISTS_CHECK:
+            default:
+                return updateOrInsertWithCheck(node, id);
         }
     }
 
+    private CompletableFuture<Void> updateOrInsertWithCheck(JsonNode node, String id) {
+        return existsAsync(id).thenCompose(exists -> exists ? updateAsync(node) : insertAsync(node));
+    }
+
+    private CompletableFuture<Void> updateOrInsertWithoutCheck(JsonNode node, String id) {
+        // a 404 for the update is treated the same as for the existence check
+        CompletableFuture<Boolean> updated = enqueue(createUpdateRequest(node), response -> checkExists(response, id));
+        return updated.thenCompose(success -> {
+            if (success) {
+                savedRequests.incrementAndGet();
+                return CompletableFuture.completedFuture(null);
+            }
+            return insertAsync(node);
+        });
+    }
+
     @Override
     public void delete(String id) throws IOException {
-        Request request = new Request.Builder().delete().url(getURL(id))
-                                               // GMU catalog requires this header...
-                                               .addHeader(HTTPHeaders.ACCEPT, MediaTypes.APPLICATION_GEO_JSON)
-                                               .build();
-        try (Response response = client.newCall(request).execute()) {
-            if (!response.isSuccessful() && response.code() != 404) {
-                throw asException(response);
-            }
-        }
+        execute(createDeleteRequest(id), response -> checkDeleted(response, id));
+    }
+
+    @Override
+    public CompletableFuture<Void> deleteAsync(String id) {
+        return enqueue(createDeleteRequest(id), response -> checkDeleted(response, id));
     }
 
     @Override
     public void update(JsonNode content) throws IOException {
-        Request request = new Request.Builder().put(asRequestBody(content)).url(getURL(content))
-                                               // GMU catalog requires this header...
-                                               .addHeader(HTTPHeaders.ACCEPT, MediaTypes.APPLICATION_GEO_JSON)
-                                               .addHeader(HTTPHeaders.CONTENT_TYPE, MediaTypes.APPLICATION_GEO_JSON)
-                                               .build();
+        execute(createUpdateRequest(content), response -> checkSuccessful(response, getId(content)));
+    }
 
-        try (Response response = client.newCall(request).execute()) {
-            if (!response.isSuccessful()) {
-                throw asException(response);
-            }
-        }
+    @Override
+    public CompletableFuture<Void> updateAsync(JsonNode content) {
+        return enqueue(createUpdateRequest(content), response -> checkSuccessful(response, getId(content)));
     }
 
     @Override
     public void insert(JsonNode content) throws IOException {
-        Request request = new Request.Builder().post(asRequestBody(content)).url(getURL())
-                                               .addHeader(HTTPHeaders.CONTENT_TYPE, MediaTypes.APPLICATION_GEO_JSON)
-                                               .build();
-        try (Response response = client.newCall(request).execute()) {
-            if (!response.isSuccessful()) {
-                throw asException(response);
-            }
-        }
+        execute(createInsertRequest(content), response -> checkSuccessful(response, getId(content)));
+    }
+
+    @Override
+    public CompletableFuture<Void> insertAsync(JsonNode content) {
+        return enqueue(createInsertRequest(content), response -> checkSuccessful(response, getId(content)));
     }
 
     @Override
     public boolean exists(String id) throws IOException {
-        Request request = new Request.Builder().get().url(getURL(id))
-                                               .addHeader(HTTPHeaders.ACCEPT, MediaTypes.APPLICATION_GEO_JSON)
-                                               .build();
+        return await(existsAsync(id));
+    }
+
+    @Override
+    public CompletableFuture<Boolean> existsAsync(String id) {
+        if (!headSupported) {
+            return enqueue(createExistsRequest(id), response -> checkExists(response, id));
+        }
+        return enqueue(createHeadRequest(id), response -> checkHead(response, id)).thenCompose(exists -> {
+            if (exists != null) {
+                return CompletableFuture.completedFuture(exists);
+            }
+            LOG.info("{} does not support HEAD requests, falling back to GET", getURL());
+            headSupported = false;
+            return enqueue(createExistsRequest(id), response -> checkExists(response, id));
+        });
+    }
+
+    @Override
+    public CompletableFuture<Set<String>> getIdentifiersAsync() {
+        return getIdentifiersAsync(getURL(), new HashSet<>(), 0);
+    }
+
+    private CompletableFuture<Set<String>> getIdentifiersAsync(HttpUrl url, Set<String> identifiers, int page) {
+        if (page >= MAX_PAGES) {
+            LOG.warn("Stopped listing {} after {} pages", getURL(), page);
+            return CompletableFuture.completedFuture(identifiers);
+        }
+        return enqueue(createListRequest(url), response -> checkListed(response, identifiers))
+                       .thenCompose(next -> next == null
+                                            ? CompletableFuture.completedFuture(identifiers)
+                                            : getIdentifiersAsync(next, identifiers, page + 1));
+    }
+
+    private Request createDeleteRequest(String id) {
+        return new Request.Builder().delete().url(config.getCatalog().createURL(id))
+                                    .tag(CatalogOperation.class, CatalogOperation.DELETE)
+                                    // GMU catalog requires this header...
+                                    .addHeader(HTTPHeaders.ACCEPT, MediaTypes.APPLICATION_GEO_JSON)
+                                    .build();
+    }
+
+    private Request createUpdateRequest(JsonNode content) {
+        Request.Builder builder = new Request.Builder().put(asRequestBody(content)).url(getURL(content))
+                                                       .tag(CatalogOperation.class, CatalogOperation.UPDATE)
+                                                       // GMU catalog requires this header...
+                                                       .addHeader(HTTPHeaders.ACCEPT, MediaTypes.APPLICATION_GEO_JSON)
+                                                       .addHeader(HTTPHeaders.CONTENT_TYPE,
+                                                                  MediaTypes.APPLICATION_GEO_JSON);
+        // do not overwrite changes of other instances since the last time we have seen the record
+        Validators validator = validators.get(getId(content));
+        if (validator != null) {
+            if (validator.getStrongETag() != null) {
+                builder.addHeader(IF_MATCH, validator.getStrongETag());
+            } else if (validator.getLastModified() != null) {
+                builder.addHeader(IF_UNMODIFIED_SINCE, validator.getLastModified());
+            }
+        }
+        return builder.build();
+    }
+
+    private Request createInsertRequest(JsonNode content) {
+        return new Request.Builder().post(asRequestBody(content)).url(getURL())
+                                    .tag(CatalogOperation.class, CatalogOperation.INSERT)
+                                    .addHeader(HTTPHeaders.CONTENT_TYPE, MediaTypes.APPLICATION_GEO_JSON)
+                                    .build();
+    }
+
+    private Request createExistsRequest(String id) {
+        Request.Builder builder = new Request.Builder().get().url(getURL(id))
+                                                       .tag(CatalogOperation.class, CatalogOperation.EXISTS)
+                                                       .addHeader(HTTPHeaders.ACCEPT, MediaTypes.APPLICATION_GEO_JSON);
+        // avoid the transfer of the body if it did not change
+        Validators validator = validators.get(id);
+        if (validator != null && validator.getETag() != null) {
+            builder.addHeader(IF_NONE_MATCH, validator.getETag());
+        }
+        return builder.build();
+    }
+
+    private Request createHeadRequest(String id) {
+        return new Request.Builder().head().url(getURL(id))
+                                    .tag(CatalogOperation.class, CatalogOperation.EXISTS)
+                                    .addHeader(HTTPHeaders.ACCEPT, MediaTypes.APPLICATION_GEO_JSON)
+                                    .build();
+    }
+
+    private Request createListRequest(HttpUrl url) {
+        return new Request.Builder().get().url(url)
+                                    .tag(CatalogOperation.class, CatalogOperation.LIST)
+                                    .addHeader(HTTPHeaders.ACCEPT, MediaTypes.APPLICATION_GEO_JSON)
+                                    .build();
+    }
+
+    /**
+     * Adds the identifiers of the listed features and returns the URL of the next page, if any.
+     */
+    private HttpUrl checkListed(Response response, Set<String> identifiers) throws IOException {
+        ResponseBody body = response.body();
+        if (!response.isSuccessful() || body == null) {
+            throw asException(response);
+        }
+        JsonNode collection = objectMapper.readTree(body.byteStream());
+        for (JsonNode feature : collection.path(JsonConstants.FEATURES)) {
+            String id = getId(feature);
+            if (id == null) {
+                id = feature.path(JsonConstants.ID).textValue();
+            }
+            if (id != null) {
+                identifiers.add(id);
+            }
+        }
+        return getNextPage(collection, response.request().url());
+    }
+
+    private HttpUrl getNextPage(JsonNode collection, HttpUrl base) {
+        // OWC GeoJSON encodes the link in the properties, OGC API in a top-level array
+        JsonNode next = collection.path(JsonConstants.PROPERTIES).path(JsonConstants.LINKS)
+                                  .path(JsonConstants.NEXT).path(0).path(JsonConstants.HREF);
+        if (next.isMissingNode()) {
+            for (JsonNode link : collection.path(JsonConstants.LINKS)) {
+                if (JsonConstants.NEXT.equals(link.path(JsonConstants.REL).textValue())) {
+                    next = link.path(JsonConstants.HREF);
+                }
+            }
+        }
+        return next.isTextual() ? base.resolve(next.textValue()) : null;
+    }
+
+    private Void checkDeleted(Response response, String id) throws IOException {
+        if (!response.isSuccessful() && response.code() != 404) {
+            throw asException(response);
+        }
+        knownIdentifiers.remove(id);
+        validators.remove(id);
+        modifiedConcurrently.remove(id);
+        return null;
+    }
+
+    private Void checkSuccessful(Response response, String id) throws IOException {
+        if (!response.isSuccessful()) {
+            throw asException(response, id);
+        }
+        knownIdentifiers.add(id);
+        updateValidators(response, id);
+        return null;
+    }
+
+    private Boolean checkExists(Response response, String id) throws IOException {
+        if (response.isSuccessful() || response.code() == NOT_MODIFIED) {
+            knownIdentifiers.add(id);
+            updateValidators(response, id);
+            modifiedConcurrently.remove(id);
+            return true;
+        } else if (response.code() == NOT_FOUND) {
+            knownIdentifiers.remove(id);
+            validators.remove(id);
+            modifiedConcurrently.remove(id);
+            return false;
+        } else {
+            throw asException(response, id);
+        }
+    }
+
+    /**
+     * Checks the response of a {@code HEAD} request, returning {@code null} if the catalog does not support them.
+     */
+    private Boolean checkHead(Response response, String id) throws IOException {
+        if (response.code() == METHOD_NOT_ALLOWED || response.code() == NOT_IMPLEMENTED) {
+            return null;
+        }
+        return checkExists(response, id);
+    }
+
+    private void updateValidators(Response response, String id) {
+        String etag = response.header(ETAG);
+        String lastModified = response.header(LAST_MODIFIED);
+        if (etag != null || lastModified != null) {
+            validators.put(id, new Validators(etag, lastModified));
+        } else if (response.code() != NOT_MODIFIED) {
+            validators.remove(id);
+        }
+    }
+
+    private <T> T execute(Request request, ResponseHandler<T> handler) throws IOException {
         try (Response response = client.newCall(request).execute()) {
-            if (response.isSuccessful()) {
-                return true;
-            } else if (response.code() == 404) {
-                return false;
-            } else {
-                throw asException(response);
+            return handler.handle(response);
+        }
+    }
+
+    private <T> CompletableFuture<T> enqueue(Request request, ResponseHandler<T> handler) {
+        return ResponseFuture.enqueue(client.newCall(request), handler);
+    }
+
+    private <T> T await(CompletableFuture<T> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException();
+        } catch (ExecutionException e) {
+            Throwable cause = Futures.unwrap(e);
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
             }
+            throw new IOException(cause);
         }
     }
 
@@ -124,15 +388,55 @@ public class CatalogClientImpl implements CatalogClient {
         return node.path(JsonConstants.PROPERTIES).path(JSONConstants.IDENTIFIER).textValue();
     }
 
-    private RequestBody asRequestBody(JsonNode content) throws IOException {
-        String value = objectMapper.writeValueAsString(content);
-        LOG.info("request-body: {}", value);
-        return RequestBody.create(value, MediaTypes.APPLICATION_GEO_JSON_TYPE);
+    private RequestBody asRequestBody(JsonNode content) {
+        JsonRequestBody body = new JsonRequestBody(content, MediaTypes.APPLICATION_GEO_JSON_TYPE);
+        if (LOG.isDebugEnabled()) {
+            LOG.debug("request-body: {}", body.toString(MAX_LOGGED_BODY_LENGTH));
+        }
+        return body;
+    }
+
+    private IOException asException(Response response, String id) throws IOException {
+        if (response.code() == PRECONDITION_FAILED) {
+            // the record was modified by someone else, fetch the current validators the next time
+            validators.remove(id);
+            knownIdentifiers.remove(id);
+            modifiedConcurrently.add(id);
+            return new CatalogException(response.code(), String.format("%s was modified concurrently", id));
+        }
+        return asException(response);
     }
 
     private IOException asException(Response response) throws IOException {
         ResponseBody responseBody = response.body();
         String body = responseBody == null ? null : responseBody.string();
-        return new IOException(String.format("service responded with %d: %s", response.code(), body));
+        return new CatalogException(response.code(),
+                                    String.format("service responded with %d: %s", response.code(), body));
+    }
+
+    private static final class Validators {
+        private static final String WEAK_PREFIX = "W/";
+        private final String etag;
+        private final String lastModified;
+
+        Validators(String etag, String lastModified) {
+            this.etag = etag;
+            this.lastModified = lastModified;
+        }
+
+        String getETag() {
+            return etag;
+        }
+
+        /**
+         * Weak entity tags can not be used with {@code If-Match}.
+         */
+        String getStrongETag() {
+            return etag == null || etag.startsWith(WEAK_PREFIX) ? null : etag;
+        }
+
+        String getLastModified() {
+            return lastModified;
+        }
     }
 }
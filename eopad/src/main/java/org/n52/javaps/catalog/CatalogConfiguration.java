@@ -25,7 +25,6 @@ import org.n52.shetland.ogc.wps.ap.ApplicationPackage;
 import org.n52.shetland.ogc.wps.description.ProcessDescription;
 
 import java.util.Locale;
-import java.util.stream.Stream;
 
 public interface CatalogConfiguration {
     Catalog getCatalog();
@@ -60,7 +59,22 @@ public interface CatalogConfiguration {
         return getProcessUrl(applicationPackage.getProcessDescription());
     }
 
-    Stream<ApplicationPackage> getApplicationPackages();
+    /**
+     * Get the currently registered application packages. The returned snapshot does not change, so callers that need
+     * a consistent view should only call this once.
+     *
+     * @return the snapshot of the application packages
+     */
+    ApplicationPackageRegistry.Snapshot getApplicationPackages();
+
+    /**
+     * Drops the cached URLs of the process with the specified identifier, e.g. after it was unregistered.
+     *
+     * @param id the process identifier
+     */
+    default void evict(String id) {
+        getCatalog().evict(id);
+    }
 
     String getServiceIdentifier();
 
@@ -18,40 +18,28 @@ package org.n52.javaps.catalog;
 
 import okhttp3.HttpUrl;
 import org.n52.iceland.ogc.ows.OwsServiceMetadataRepository;
-import org.n52.janmayen.function.Predicates;
-import org.n52.janmayen.stream.Streams;
-import org.n52.javaps.transactional.TransactionalAlgorithmRepository;
 import org.n52.shetland.ogc.ows.OwsServiceIdentification;
 import org.n52.shetland.ogc.ows.OwsServiceProvider;
 import org.n52.shetland.ogc.wps.WPSConstants;
-import org.n52.shetland.ogc.wps.ap.ApplicationPackage;
 
-import java.util.Collection;
-import java.util.Collections;
-import java.util.List;
 import java.util.Locale;
 import java.util.Objects;
-import java.util.Optional;
-import java.util.stream.Stream;
-
-import static java.util.stream.Collectors.joining;
-import static java.util.stream.Collectors.toList;
 
 public class CatalogConfigurationImpl implements CatalogConfiguration {
-    private final HttpUrl serviceURL;
-    private final Collection<TransactionalAlgorithmRepository> repositories;
+    private final ServiceUrls serviceUrls;
+    private final ApplicationPackageRegistry applicationPackageRegistry;
     private final Catalog catalog;
     private final OwsServiceMetadataRepository serviceMetadataRepository;
     private final Locale defaultLocale;
 
     public CatalogConfigurationImpl(Catalog catalog,
-                                    Collection<TransactionalAlgorithmRepository> repositories,
+                                    ApplicationPackageRegistry applicationPackageRegistry,
                                     OwsServiceMetadataRepository serviceMetadataRepository,
-                                    HttpUrl serviceURL,
+                                    ServiceUrls serviceUrls,
                                     Locale defaultLocale) {
         this.catalog = Objects.requireNonNull(catalog);
-        this.repositories = Objects.requireNonNull(repositories);
-        this.serviceURL = Objects.requireNonNull(serviceURL);
+        this.applicationPackageRegistry = Objects.requireNonNull(applicationPackageRegistry);
+        this.serviceUrls = Objects.requireNonNull(serviceUrls);
         this.serviceMetadataRepository = Objects.requireNonNull(serviceMetadataRepository);
         this.defaultLocale = Objects.requireNonNull(defaultLocale);
     }
@@ -63,14 +51,12 @@ public class CatalogConfigurationImpl implements CatalogConfiguration {
 
     @Override
     public HttpUrl getServiceURL() {
-        return serviceURL;
+        return serviceUrls.getServiceURL();
     }
 
     @Override
     public HttpUrl getExecuteUrl(String id) {
-        return getProcessUrl(id).newBuilder()
-                                .addPathSegment("jobs")
-                                .build();
+        return serviceUrls.getExecuteUrl(id);
     }
 
     @Override
@@ -90,31 +76,22 @@ public class CatalogConfigurationImpl implements CatalogConfiguration {
 
     @Override
     public HttpUrl getProcessUrl(String id) {
-        return getServiceURL().newBuilder()
-                              .addPathSegment("processes")
-                              .addPathSegment(id)
-                              .build();
+        return serviceUrls.getProcessUrl(id);
     }
 
     @Override
-    public Stream<ApplicationPackage> getApplicationPackages() {
-        return repositories.stream().flatMap(this::getApplicationPackages);
+    public void evict(String id) {
+        serviceUrls.evict(id);
+        catalog.evict(id);
     }
 
-    private Stream<ApplicationPackage> getApplicationPackages(TransactionalAlgorithmRepository repository) {
-        return repository.getAlgorithmNames().stream().map(repository::getApplicationPackage)
-                         .filter(Optional::isPresent).map(Optional::get);
+    @Override
+    public ApplicationPackageRegistry.Snapshot getApplicationPackages() {
+        return applicationPackageRegistry.getSnapshot();
     }
 
     @Override
     public String getServiceIdentifier() {
-        return asIdentifier(getServiceURL());
-    }
-
-    private String asIdentifier(HttpUrl url) {
-        List<String> domain = Streams.stream(url.host().split("\\.")).collect(toList());
-        Collections.reverse(domain);
-        Stream<String> path = Streams.stream(url.encodedPath().split("/")).filter(Predicates.not(String::isEmpty));
-        return Stream.concat(domain.stream(), path).collect(joining("."));
+        return serviceUrls.getServiceIdentifier();
     }
 }
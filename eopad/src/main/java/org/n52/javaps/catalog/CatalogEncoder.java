@@ -25,4 +25,6 @@ public interface CatalogEncoder {
             throws EncodingException;
 
     ObjectNode createServiceInsertion(CatalogConfiguration config) throws EncodingException;
+
+    ServiceDescription createServiceDescription(CatalogConfiguration config) throws EncodingException;
 }
@@ -46,13 +46,16 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
 import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
-import java.util.Set;
-import java.util.stream.Stream;
 
-import static java.util.stream.Collectors.toSet;
+import static java.util.stream.Collectors.toList;
 
 @Component
 @Configurable
@@ -64,17 +67,20 @@ public class CatalogEncoderImpl implements CatalogEncoder {
 
     private EncoderRepository encoderRepository;
     private Engine engine;
+    private EncodingCache encodingCache;
 
     @Autowired
-    public CatalogEncoderImpl(Engine engine, EncoderRepository encoderRepository) {
+    public CatalogEncoderImpl(Engine engine, EncoderRepository encoderRepository, EncodingCache encodingCache) {
         this.encoderRepository = Objects.requireNonNull(encoderRepository);
         this.engine = Objects.requireNonNull(engine);
+        this.encodingCache = Objects.requireNonNull(encodingCache);
     }
 
     @Override
     public ObjectNode createProcessInsertion(ApplicationPackage applicationPackage, CatalogConfiguration config)
             throws EncodingException {
-        JsonNode content = getApplicationPackageEncoder().encode(applicationPackage);
+        JsonNode content = encodingCache.getApplicationPackage(applicationPackage,
+                                                               getApplicationPackageEncoder()::encode);
 
         ObjectNode root = Json.nodeFactory().objectNode()
                               .put(JsonConstants.TYPE, JsonConstants.FEATURE)
@@ -105,6 +111,11 @@ public class CatalogEncoderImpl implements CatalogEncoder {
 
     @Override
     public ObjectNode createServiceInsertion(CatalogConfiguration config) throws EncodingException {
+        return createServiceDescription(config).toJson();
+    }
+
+    @Override
+    public ServiceDescription createServiceDescription(CatalogConfiguration config) throws EncodingException {
         ObjectNode root = Json.nodeFactory().objectNode()
                               .put(JsonConstants.TYPE, JsonConstants.FEATURE)
                               .put(JsonConstants.ID, config.getServiceURL().toString())
@@ -120,11 +131,7 @@ public class CatalogEncoderImpl implements CatalogEncoder {
         profiles.addObject().put(JsonConstants.HREF, Specifications.OWC_GEOJSON_CORE);
         profiles.addObject().put(JsonConstants.HREF, Specifications.EOPAD_GEOJSON_CORE);
 
-        ArrayNode hosts = links.putArray(JsonConstants.HOSTS);
-        config.getApplicationPackages().forEach(ap -> hosts.addObject()
-                                                           .put(JsonConstants.HREF, config.getCatalog().getURL(ap))
-                                                           .put(JsonConstants.TYPE, MediaTypes.APPLICATION_GEO_JSON)
-                                                           .put(JsonConstants.TITLE, getTitle(ap)));
+        links.putArray(JsonConstants.HOSTS);
 
         properties.putArray(JsonConstants.ENDPOINT_DESCRIPTION).add(config.getServiceURL().toString());
 
@@ -138,14 +145,7 @@ public class CatalogEncoderImpl implements CatalogEncoder {
         serviceIdentification.getProfiles().stream().map(java.net.URI::toString)
                              .forEach(profile -> profiles.addObject().put(JsonConstants.HREF, profile));
 
-        ArrayNode keywords = properties.putArray(JsonConstants.KEYWORD);
-        Stream.concat(serviceIdentification.getKeywords().stream(),
-                      engine.getProcessDescriptions().stream()
-                            .map(ProcessDescription::getKeywords)
-                            .flatMap(Set::stream))
-              .map(OwsKeyword::getKeyword)
-              .map(OwsLanguageString::getValue)
-              .forEach(keywords::add);
+        properties.putArray(JsonConstants.KEYWORD);
 
         serviceIdentification.getAbstract()
                              .flatMap(description -> description.getLocalization(config.getDefaultLocale()))
@@ -220,45 +220,70 @@ public class CatalogEncoderImpl implements CatalogEncoder {
                   .put(JsonConstants.TYPE, MediaTypes.APPLICATION_JSON)
                   .putObject(JsonConstants.REQUEST).put(JsonConstants.TYPE, MediaTypes.APPLICATION_JSON);
 
-        Set<OwsCode> transactionalIdentifiers = config.getApplicationPackages()
-                                                      .map(ApplicationPackage::getProcessDescription)
-                                                      .map(ProcessOffering::getProcessDescription)
-                                                      .map(ProcessDescription::getId)
-                                                      .collect(toSet());
+        ServiceDescriptionImpl serviceDescription = new ServiceDescriptionImpl(config, root);
+
+        serviceIdentification.getKeywords().stream()
+                             .map(OwsKeyword::getKeyword)
+                             .map(OwsLanguageString::getValue)
+                             .forEach(serviceDescription::addKeyword);
 
+        for (ApplicationPackage applicationPackage : config.getApplicationPackages()) {
+            serviceDescription.register(applicationPackage);
+        }
         for (ProcessDescription description : engine.getProcessDescriptions()) {
-            JsonNode content = getProcessOfferingEncoder().encode(new ProcessOffering(description));
-            String processUrl = config.getProcessUrl(description).toString();
-
-            operations.addObject()
-                      .put(JsonConstants.CODE, Operations.DESCRIBE_PROCESS)
-                      .put(JsonConstants.METHOD, HTTPMethods.GET)
-                      .put(JsonConstants.HREF, processUrl)
-                      .put(JsonConstants.TYPE, MediaTypes.APPLICATION_JSON)
-                      .putObject(JsonConstants.RESULT)
-                      .put(JsonConstants.TYPE, MediaTypes.APPLICATION_JSON)
-                      .set(JsonConstants.CONTENT, content);
-            operations.addObject()
-                      .put(JsonConstants.CODE, Operations.EXECUTE_PROCESS)
-                      .put(JsonConstants.METHOD, HTTPMethods.POST)
-                      .put(JsonConstants.HREF, config.getExecuteUrl(description).toString())
-                      .put(JsonConstants.TYPE, MediaTypes.APPLICATION_JSON)
-                      .putObject(JsonConstants.REQUEST).put(JsonConstants.TYPE, MediaTypes.APPLICATION_JSON);
-
-            if (transactionalIdentifiers.contains(description.getId())) {
-                operations.addObject()
-                          .put(JsonConstants.CODE, Operations.DELETE_PROCESS)
-                          .put(JsonConstants.METHOD, HTTPMethods.DELETE)
-                          .put(JsonConstants.HREF, processUrl);
-                operations.addObject()
-                          .put(JsonConstants.CODE, Operations.UPDATE_PROCESS)
-                          .put(JsonConstants.METHOD, HTTPMethods.PUT)
-                          .put(JsonConstants.HREF, processUrl)
-                          .put(JsonConstants.TYPE, MediaTypes.APPLICATION_JSON)
-                          .putObject(JsonConstants.REQUEST).put(JsonConstants.TYPE, MediaTypes.APPLICATION_JSON);
+            if (!serviceDescription.contains(description.getId().getValue())) {
+                serviceDescription.add(description);
             }
         }
-        return root;
+        return serviceDescription;
+    }
+
+    private ProcessEntry createProcessEntry(CatalogConfiguration config, ProcessDescription description,
+                                            ApplicationPackage applicationPackage) throws EncodingException {
+        JsonNode content = encodingCache.getProcessOffering(description, this::encodeProcessOffering);
+        String processUrl = config.getProcessUrl(description).toString();
+
+        List<JsonNode> operations = new ArrayList<>(4);
+        operations.add(Json.nodeFactory().objectNode()
+                           .put(JsonConstants.CODE, Operations.DESCRIBE_PROCESS)
+                           .put(JsonConstants.METHOD, HTTPMethods.GET)
+                           .put(JsonConstants.HREF, processUrl)
+                           .put(JsonConstants.TYPE, MediaTypes.APPLICATION_JSON)
+                           .set(JsonConstants.RESULT, Json.nodeFactory().objectNode()
+                                                          .put(JsonConstants.TYPE, MediaTypes.APPLICATION_JSON)
+                                                          .set(JsonConstants.CONTENT, content)));
+        ObjectNode execute = Json.nodeFactory().objectNode()
+                                 .put(JsonConstants.CODE, Operations.EXECUTE_PROCESS)
+                                 .put(JsonConstants.METHOD, HTTPMethods.POST)
+                                 .put(JsonConstants.HREF, config.getExecuteUrl(description).toString())
+                                 .put(JsonConstants.TYPE, MediaTypes.APPLICATION_JSON);
+        execute.putObject(JsonConstants.REQUEST).put(JsonConstants.TYPE, MediaTypes.APPLICATION_JSON);
+        operations.add(execute);
+
+        ObjectNode host = null;
+        if (applicationPackage != null) {
+            host = Json.nodeFactory().objectNode()
+                       .put(JsonConstants.HREF, config.getCatalog().getURL(applicationPackage))
+                       .put(JsonConstants.TYPE, MediaTypes.APPLICATION_GEO_JSON)
+                       .put(JsonConstants.TITLE, getTitle(applicationPackage));
+            operations.add(Json.nodeFactory().objectNode()
+                               .put(JsonConstants.CODE, Operations.DELETE_PROCESS)
+                               .put(JsonConstants.METHOD, HTTPMethods.DELETE)
+                               .put(JsonConstants.HREF, processUrl));
+            ObjectNode update = Json.nodeFactory().objectNode()
+                                    .put(JsonConstants.CODE, Operations.UPDATE_PROCESS)
+                                    .put(JsonConstants.METHOD, HTTPMethods.PUT)
+                                    .put(JsonConstants.HREF, processUrl)
+                                    .put(JsonConstants.TYPE, MediaTypes.APPLICATION_JSON);
+            update.putObject(JsonConstants.REQUEST).put(JsonConstants.TYPE, MediaTypes.APPLICATION_JSON);
+            operations.add(update);
+        }
+
+        List<String> keywords = description.getKeywords().stream()
+                                           .map(OwsKeyword::getKeyword)
+                                           .map(OwsLanguageString::getValue)
+                                           .collect(toList());
+        return new ProcessEntry(host, operations, keywords);
     }
 
     private String getRootUrl(CatalogConfiguration config, String path) {
@@ -282,6 +307,10 @@ public class CatalogEncoderImpl implements CatalogEncoder {
         return applicationPackage.getProcessDescription().getProcessDescription().getId().getValue();
     }
 
+    private JsonNode encodeProcessOffering(ProcessDescription description) throws EncodingException {
+        return getProcessOfferingEncoder().encode(new ProcessOffering(description));
+    }
+
     private Encoder<JsonNode, ProcessOffering> getProcessOfferingEncoder() {
         return encoderRepository
                        .<JsonNode, ProcessOffering>tryGetEncoder(new JSONEncoderKey(ProcessOffering.class))
@@ -293,4 +322,137 @@ public class CatalogEncoderImpl implements CatalogEncoder {
                        .<JsonNode, ApplicationPackage>tryGetEncoder(new JSONEncoderKey(ApplicationPackage.class))
                        .orElseThrow(() -> new RuntimeException("no application package encoder found"));
     }
+
+    private static ArrayNode copy(ArrayNode array) {
+        return Json.nodeFactory().arrayNode(array.size()).addAll(array);
+    }
+
+    private static ObjectNode copy(ObjectNode object) {
+        ObjectNode copy = Json.nodeFactory().objectNode();
+        copy.setAll(object);
+        return copy;
+    }
+
+    private static void removeAll(ArrayNode array, Collection<JsonNode> nodes) {
+        for (int i = array.size() - 1; i >= 0; --i) {
+            JsonNode node = array.get(i);
+            if (nodes.stream().anyMatch(n -> n == node)) {
+                array.remove(i);
+            }
+        }
+    }
+
+    private static final class ProcessEntry {
+        private final ObjectNode host;
+        private final List<JsonNode> operations;
+        private final List<String> keywords;
+
+        ProcessEntry(ObjectNode host, List<JsonNode> operations, List<String> keywords) {
+            this.host = host;
+            this.operations = operations;
+            this.keywords = keywords;
+        }
+    }
+
+    /**
+     * Service description that is kept as a persistent document. (Un)registering a process only adds or removes the
+     * hosts link, operations and keywords of that process; {@link #toJson()} only copies the containers that are
+     * modified and shares the unmodified operation nodes.
+     */
+    private final class ServiceDescriptionImpl implements ServiceDescription {
+        private final CatalogConfiguration config;
+        private final ObjectNode root;
+        private final ObjectNode properties;
+        private final ObjectNode links;
+        private final ObjectNode offering;
+        private final ArrayNode hosts;
+        private final ArrayNode keywords;
+        private final ArrayNode operations;
+        private final Map<String, ProcessEntry> processes = new HashMap<>();
+        private final Map<String, Integer> keywordCounts = new HashMap<>();
+
+        ServiceDescriptionImpl(CatalogConfiguration config, ObjectNode root) {
+            this.config = config;
+            this.root = root;
+            this.properties = (ObjectNode) root.get(JsonConstants.PROPERTIES);
+            this.links = (ObjectNode) properties.get(JsonConstants.LINKS);
+            this.offering = (ObjectNode) properties.get(JsonConstants.OFFERINGS).get(0);
+            this.hosts = (ArrayNode) links.get(JsonConstants.HOSTS);
+            this.keywords = (ArrayNode) properties.get(JsonConstants.KEYWORD);
+            this.operations = (ArrayNode) offering.get(JsonConstants.OPERATIONS);
+        }
+
+        @Override
+        public synchronized void register(ApplicationPackage applicationPackage) throws EncodingException {
+            ProcessDescription description = applicationPackage.getProcessDescription().getProcessDescription();
+            put(description.getId().getValue(), createProcessEntry(config, description, applicationPackage));
+        }
+
+        @Override
+        public synchronized void unregister(ApplicationPackage applicationPackage) {
+            remove(getIdentifier(applicationPackage));
+        }
+
+        @Override
+        public synchronized ObjectNode toJson() {
+            ObjectNode rootCopy = copy(root);
+            ObjectNode propertiesCopy = rootCopy.putObject(JsonConstants.PROPERTIES);
+            propertiesCopy.setAll(properties);
+            propertiesCopy.put(JsonConstants.UPDATED, OffsetDateTime.now().toString());
+            propertiesCopy.set(JsonConstants.KEYWORD, copy(keywords));
+            ObjectNode linksCopy = propertiesCopy.putObject(JsonConstants.LINKS);
+            linksCopy.setAll(links);
+            linksCopy.set(JsonConstants.HOSTS, copy(hosts));
+            ObjectNode offeringCopy = propertiesCopy.putArray(JsonConstants.OFFERINGS).addObject();
+            offeringCopy.setAll(offering);
+            offeringCopy.set(JsonConstants.OPERATIONS, copy(operations));
+            return rootCopy;
+        }
+
+        boolean contains(String id) {
+            return processes.containsKey(id);
+        }
+
+        void add(ProcessDescription description) throws EncodingException {
+            put(description.getId().getValue(), createProcessEntry(config, description, null));
+        }
+
+        void addKeyword(String keyword) {
+            if (keywordCounts.merge(keyword, 1, Integer::sum) == 1) {
+                keywords.add(keyword);
+            }
+        }
+
+        private void removeKeyword(String keyword) {
+            Integer count = keywordCounts.computeIfPresent(keyword, (k, c) -> c > 1 ? c - 1 : null);
+            if (count == null) {
+                for (int i = keywords.size() - 1; i >= 0; --i) {
+                    if (keyword.equals(keywords.get(i).textValue())) {
+                        keywords.remove(i);
+                    }
+                }
+            }
+        }
+
+        private void put(String id, ProcessEntry entry) {
+            remove(id);
+            processes.put(id, entry);
+            if (entry.host != null) {
+                hosts.add(entry.host);
+            }
+            operations.addAll(entry.operations);
+            entry.keywords.forEach(this::addKeyword);
+        }
+
+        private void remove(String id) {
+            ProcessEntry entry = processes.remove(id);
+            if (entry != null) {
+                if (entry.host != null) {
+                    removeAll(hosts, Collections.singleton(entry.host));
+                }
+                removeAll(operations, entry.operations);
+                entry.keywords.forEach(this::removeKeyword);
+            }
+        }
+    }
 }
@@ -0,0 +1,97 @@
+/*
+ * Copyright 2019-2020 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.n52.javaps.catalog;
+
+import java.util.Objects;
+
+/**
+ * A catalog that is managed by the {@link CatalogRegistry}.
+ */
+public final class CatalogEndpoint {
+    private final String name;
+    private final String url;
+    private final String username;
+    private final String password;
+    private final UpsertStrategy upsertStrategy;
+
+    public CatalogEndpoint(String name, String url) {
+        this(name, url, null, null, null);
+    }
+
+    /**
+     * Creates a new endpoint.
+     *
+     * @param name           the unique name of the endpoint
+     * @param url            the URL of the catalog
+     * @param username       the user name, may be {@code null}
+     * @param password       the password, may be {@code null}
+     * @param upsertStrategy the upsert strategy, {@code null} for the {@link UpsertStrategy#DEFAULT default}
+     */
+    public CatalogEndpoint(String name, String url, String username, String password,
+                           UpsertStrategy upsertStrategy) {
+        this.name = Objects.requireNonNull(name);
+        this.url = Objects.requireNonNull(url);
+        this.username = username;
+        this.password = password;
+        this.upsertStrategy = upsertStrategy == null ? UpsertStrategy.DEFAULT : upsertStrategy;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getURL() {
+        return url;
+    }
+
+    public String getUsername() {
+        return username;
+    }
+
+    public String getPassword() {
+        return password;
+    }
+
+    public UpsertStrategy getUpsertStrategy() {
+        return upsertStrategy;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        CatalogEndpoint that = (CatalogEndpoint) o;
+        return name.equals(that.name) && url.equals(that.url) && Objects.equals(username, that.username) &&
+               Objects.equals(password, that.password) && upsertStrategy == that.upsertStrategy;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(name, url, username, password, upsertStrategy);
+    }
+
+    @Override
+    public String toString() {
+        // without the credentials
+        return String.format("%s{name=%s, url=%s, upsertStrategy=%s}", getClass().getSimpleName(), name, url,
+                             upsertStrategy);
+    }
+}
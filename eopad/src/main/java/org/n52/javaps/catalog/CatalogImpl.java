@@ -19,22 +19,36 @@ package org.n52.javaps.catalog;
 import okhttp3.HttpUrl;
 import org.n52.shetland.ogc.wps.ap.ApplicationPackage;
 
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
 public class CatalogImpl implements Catalog {
     private static final String SERVICES = "services";
     private final HttpUrl url;
+    private final Map<String, HttpUrl> urls = new ConcurrentHashMap<>();
 
     public CatalogImpl(String url) {
-        this.url = HttpUrl.get(url);
+        this.url = HttpUrl.get(url).newBuilder().addPathSegment(SERVICES).build();
     }
 
     @Override
     public HttpUrl getURL() {
-        return url.newBuilder().addPathSegment(SERVICES).build();
+        return url;
     }
 
     @Override
     public HttpUrl getURL(String id) {
-        return url.newBuilder().addPathSegment(SERVICES).addPathSegment(id).build();
+        return urls.computeIfAbsent(id, this::createURL);
+    }
+
+    @Override
+    public HttpUrl createURL(String id) {
+        return url.newBuilder().addPathSegment(id).build();
+    }
+
+    @Override
+    public void evict(String id) {
+        urls.remove(id);
     }
 
     @Override
@@ -0,0 +1,46 @@
+/*
+ * Copyright 2019-2020 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.n52.javaps.catalog;
+
+/**
+ * Lease that determines which of several javaPS instances publishes to a catalog. All instances that publish the
+ * same application packages to the same catalog are members of the lease; exactly one of them is the leader at a
+ * time.
+ */
+public interface CatalogLease {
+    /**
+     * Joins the lease. The listener is notified about every change of the leadership of this member.
+     *
+     * @param listener the listener
+     */
+    void join(LeadershipListener listener);
+
+    boolean isLeader();
+
+    /**
+     * Leaves the lease. If this member was the leader, another member takes over.
+     *
+     * @return if this was the last member of the lease
+     */
+    boolean leave();
+
+    interface LeadershipListener {
+        void onAcquired();
+
+        void onRevoked();
+    }
+}
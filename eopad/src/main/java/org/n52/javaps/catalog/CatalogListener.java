@@ -16,7 +16,9 @@
  */
 package org.n52.javaps.catalog;
 
+import com.fasterxml.jackson.databind.JsonNode;
 import org.n52.faroe.annotation.Configurable;
+import org.n52.faroe.annotation.Setting;
 import org.n52.janmayen.lifecycle.Constructable;
 import org.n52.janmayen.lifecycle.Destroyable;
 import org.n52.javaps.transactional.TransactionalAlgorithmRepositoryListener;
@@ -26,64 +28,521 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
 
 @Configurable
 public class CatalogListener implements TransactionalAlgorithmRepositoryListener, Constructable, Destroyable {
     private static final Logger LOG = LoggerFactory.getLogger(CatalogListener.class);
+    private static final long SHUTDOWN_TIMEOUT_SECONDS = 30;
+    private static final int DEFAULT_SYNC_PARALLELISM = 4;
+    private static final Duration DEFAULT_SYNC_DEADLINE = Duration.ofSeconds(30);
+    private static final Duration DEFAULT_RECONCILIATION_INTERVAL = Duration.ofHours(1);
     private final CatalogEncoder catalogEncoder;
-    private final CatalogClient client;
+    private final AsyncCatalogClient client;
+    private final CatalogTransport transport;
     private final CatalogConfiguration config;
+    private final PublicationQueue queue;
+    private final CatalogOutbox outbox;
+    private final CatalogState state;
+    private final ScheduledExecutorService scheduler;
+    private final CatalogLease lease;
+    private final AtomicLong skipped = new AtomicLong();
+    private ScheduledFuture<?> reconciliation;
+    private volatile CompletableFuture<Void> sync = CompletableFuture.completedFuture(null);
+    private volatile ServiceDescription serviceDescription;
+    private int syncParallelism = DEFAULT_SYNC_PARALLELISM;
+    private Duration syncDeadline = DEFAULT_SYNC_DEADLINE;
+    private Duration reconciliationInterval = DEFAULT_RECONCILIATION_INTERVAL;
 
-    public CatalogListener(CatalogConfiguration config, CatalogEncoder catalogEncoder, CatalogClient client) {
+    public CatalogListener(CatalogConfiguration config, CatalogEncoder catalogEncoder, AsyncCatalogClient client,
+                           ScheduledExecutorService scheduler) {
+        this(config, catalogEncoder, client, scheduler, null, new CatalogState(null), new InMemoryCatalogLease());
+    }
+
+    public CatalogListener(CatalogConfiguration config, CatalogEncoder catalogEncoder, AsyncCatalogClient client,
+                           ScheduledExecutorService scheduler, CatalogOutbox outbox, CatalogState state,
+                           CatalogLease lease) {
+        this(config, catalogEncoder, client, new SingleRecordCatalogTransport(client), scheduler, outbox, state,
+             lease);
+    }
+
+    /**
+     * Creates a new listener.
+     *
+     * @param config         the catalog configuration
+     * @param catalogEncoder the encoder
+     * @param client         the catalog client
+     * @param transport      the transport for the changes of records
+     * @param scheduler      the scheduler for the publications
+     * @param outbox         the outbox to record publications in, may be {@code null}
+     * @param state          the state of the catalog
+     * @param lease          the lease to determine if this instance publishes to the catalog
+     */
+    public CatalogListener(CatalogConfiguration config, CatalogEncoder catalogEncoder, AsyncCatalogClient client,
+                           CatalogTransport transport, ScheduledExecutorService scheduler, CatalogOutbox outbox,
+                           CatalogState state, CatalogLease lease) {
         this.catalogEncoder = Objects.requireNonNull(catalogEncoder);
         this.client = Objects.requireNonNull(client);
+        this.transport = Objects.requireNonNull(transport);
         this.config = Objects.requireNonNull(config);
+        this.scheduler = Objects.requireNonNull(scheduler);
+        this.queue = new PublicationQueue(scheduler, this::publish);
+        this.outbox = outbox;
+        this.state = Objects.requireNonNull(state);
+        this.lease = Objects.requireNonNull(lease);
+    }
+
+    @Setting(CatalogSettings.PUBLICATION_WINDOW)
+    public void setPublicationWindow(String window) {
+        queue.setWindow(Duration.parse(window));
+    }
+
+    @Setting(CatalogSettings.PUBLICATION_FLUSH_THRESHOLD)
+    public void setPublicationFlushThreshold(int flushThreshold) {
+        queue.setFlushThreshold(flushThreshold);
+    }
+
+    @Setting(CatalogSettings.SYNC_PARALLELISM)
+    public void setSyncParallelism(int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("invalid sync parallelism: " + parallelism);
+        }
+        this.syncParallelism = parallelism;
+    }
+
+    @Setting(CatalogSettings.SYNC_DEADLINE)
+    public void setSyncDeadline(String deadline) {
+        this.syncDeadline = Duration.parse(deadline);
+    }
+
+    @Setting(CatalogSettings.RECONCILIATION_INTERVAL)
+    public void setReconciliationInterval(String interval) {
+        this.reconciliationInterval = Duration.parse(interval);
+    }
+
+    /**
+     * Get the number of publications that were skipped because the catalog already acknowledged the same content.
+     *
+     * @return the number of skipped publications
+     */
+    public long getSkipped() {
+        return skipped.get();
     }
 
     @Override
     public void init() {
-        // be sure to that all application packages are inserted
-        config.getApplicationPackages().forEach(this::updateOrInsertApplicationPackage);
-        // then insert the service description
-        updateOrInsertServiceDescription();
+        start();
+        if (lease.isLeader()) {
+            awaitSync();
+        }
+    }
+
+    /**
+     * Joins the lease and schedules the reconciliation without waiting for the initial sync, so that several
+     * listeners can be started concurrently.
+     *
+     * @return the future of the initial sync, completed if another instance is publishing to the catalog
+     */
+    public CompletableFuture<Void> start() {
+        // the initial sync is started when the leadership is acquired
+        lease.join(new Leadership());
+        if (!lease.isLeader()) {
+            LOG.info("Another instance is publishing to {}", config.getCatalog().getURL());
+        }
+        if (!reconciliationInterval.isZero() && !reconciliationInterval.isNegative()) {
+            long interval = reconciliationInterval.toMillis();
+            reconciliation = scheduler.scheduleWithFixedDelay(() -> {
+                if (lease.isLeader()) {
+                    queue.submit(this::reconcile);
+                }
+            }, interval, interval, TimeUnit.MILLISECONDS);
+        }
+        return sync;
+    }
+
+    private CompletableFuture<Void> startSync() {
+        List<ApplicationPackage> applicationPackages = config.getApplicationPackages().getApplicationPackages();
+        queue.submit(this::replay);
+        return queue.submit(() -> synchronize(applicationPackages));
+    }
+
+    private void awaitSync() {
+        // do not block the startup longer than the deadline, the sync will continue in the background
+        try {
+            sync.get(syncDeadline.toMillis(), TimeUnit.MILLISECONDS);
+            LOG.info("Published to {}", config.getCatalog().getURL());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            LOG.warn("Interrupted while waiting for the initial sync with {}", config.getCatalog().getURL());
+        } catch (ExecutionException e) {
+            LOG.warn("Error during initial sync with {}", config.getCatalog().getURL(), Futures.unwrap(e));
+        } catch (TimeoutException e) {
+            LOG.info("Initial sync with {} did not finish within {}, continuing in the background",
+                     config.getCatalog().getURL(), syncDeadline);
+        }
     }
 
     @Override
     public void onRegister(ApplicationPackage applicationPackage) {
-        updateOrInsertApplicationPackage(applicationPackage);
-        updateOrInsertServiceDescription();
+        // synchronized with the full build in getServiceDescription(), so that no registration is lost; the
+        // CatalogRegistry applies the event to the ApplicationPackageRegistry before, so a full build includes it
+        synchronized (this) {
+            if (serviceDescription != null) {
+                try {
+                    serviceDescription.register(applicationPackage);
+                } catch (EncodingException e) {
+                    LOG.warn("Error updating service description, rebuilding it", e);
+                    serviceDescription = null;
+                }
+            }
+        }
+        queue.addApplicationPackage(getIdentifier(applicationPackage), applicationPackage);
+        queue.addServiceDescription();
     }
 
     @Override
     public void onUnregister(ApplicationPackage applicationPackage) {
-        // TODO: delete application package
-        // DELETE /services/{id}
-        updateOrInsertServiceDescription();
+        String id = getIdentifier(applicationPackage);
+        queue.deleteApplicationPackage(id);
+        config.evict(id);
+        synchronized (this) {
+            if (serviceDescription != null) {
+                serviceDescription.unregister(applicationPackage);
+            }
+        }
+        queue.addServiceDescription();
     }
 
     @Override
     public void destroy() {
+        if (reconciliation != null) {
+            reconciliation.cancel(false);
+        }
+        queue.clear();
+        if (!lease.leave()) {
+            LOG.info("Other instances are still publishing to {}, keeping the service", config.getCatalog().getURL());
+            closeFiles();
+            return;
+        }
+        // the HTTP client is going away with us, so wait for the deletion to be sent
         try {
-            client.delete(config.getServiceIdentifier());
-        } catch (IOException e) {
-            LOG.error("Error deleting service", e);
+            delete(config.getServiceIdentifier()).get(SHUTDOWN_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            LOG.error("Interrupted while deleting service", e);
+        } catch (ExecutionException e) {
+            LOG.error("Error deleting service", Futures.unwrap(e));
+        } catch (TimeoutException e) {
+            LOG.error("Timeout deleting service", e);
+        } finally {
+            closeFiles();
         }
     }
 
-    private void updateOrInsertApplicationPackage(ApplicationPackage applicationPackage) {
-        try {
-            client.updateOrInsert(catalogEncoder.createProcessInsertion(applicationPackage, config));
-        } catch (EncodingException | IOException e) {
-            LOG.warn("Error inserting/updating application package", e);
+    /**
+     * Replays the pending deletions of the outbox. Pending upserts of registered application packages and the service
+     * description are superseded by the initial sync, pending upserts of unregistered application packages and the
+     * deletion of the service from the last shutdown are obsolete.
+     */
+    private CompletableFuture<Void> replay() {
+        if (outbox == null) {
+            return CompletableFuture.completedFuture(null);
         }
+        String serviceIdentifier = config.getServiceIdentifier();
+        Set<String> registered = config.getApplicationPackages().getIdentifiers();
+        List<Publication> deletions = new ArrayList<>();
+        for (CatalogOutbox.Entry entry : outbox.getPending()) {
+            String id = entry.getId();
+            long sequence = entry.getSequence();
+            if (entry.getType() == CatalogOutbox.Type.DELETE && !id.equals(serviceIdentifier)) {
+                LOG.info("Replaying deletion of {} from {}", id, config.getCatalog().getURL());
+                deletions.add(new Publication(CatalogChange.delete(id), sequence, null));
+            } else if (entry.getType() == CatalogOutbox.Type.DELETE
+                       || (!registered.contains(id) && !id.equals(serviceIdentifier))) {
+                acknowledge(id, sequence);
+            }
+        }
+        return send(deletions, syncParallelism);
+    }
+
+    /**
+     * Publishes the application packages using at most {@code syncParallelism} concurrent request chains and the
+     * service description after all of them completed.
+     */
+    private CompletableFuture<Void> synchronize(List<ApplicationPackage> applicationPackages) {
+        return send(prepare(applicationPackages), syncParallelism)
+                       .thenCompose(v -> updateOrInsertServiceDescription());
     }
 
-    private void updateOrInsertServiceDescription() {
+    /**
+     * Compares the records of the catalog with the registered application packages. Missing records are published
+     * again, records of application packages that were published by this listener but are no longer registered are
+     * deleted.
+     */
+    private CompletableFuture<Void> reconcile() {
+        return client.getIdentifiersAsync().thenAccept(listed -> {
+            String serviceIdentifier = config.getServiceIdentifier();
+            ApplicationPackageRegistry.Snapshot snapshot = config.getApplicationPackages();
+            snapshot.forEach(applicationPackage -> {
+                String id = getIdentifier(applicationPackage);
+                if (!listed.contains(id)) {
+                    LOG.info("Application package {} is missing in {}", id, config.getCatalog().getURL());
+                    state.forget(id);
+                    queue.addApplicationPackage(id, applicationPackage);
+                }
+            });
+            for (String id : state.getIdentifiers()) {
+                if (!snapshot.contains(id) && !id.equals(serviceIdentifier)) {
+                    if (listed.contains(id)) {
+                        LOG.info("Deleting orphaned application package {} from {}", id,
+                                 config.getCatalog().getURL());
+                        queue.deleteApplicationPackage(id);
+                    } else {
+                        state.forget(id);
+                    }
+                }
+            }
+            if (!listed.contains(serviceIdentifier)) {
+                LOG.info("Service description is missing in {}", config.getCatalog().getURL());
+                state.forget(serviceIdentifier);
+                queue.addServiceDescription();
+            }
+        }).exceptionally(t -> {
+            LOG.warn("Error reconciling {}", config.getCatalog().getURL(), Futures.unwrap(t));
+            return null;
+        });
+    }
+
+    private CompletableFuture<Void> publish(Collection<ApplicationPackage> applicationPackages,
+                                            Collection<String> deletions, boolean serviceDescription) {
+        if (!lease.isLeader()) {
+            // the leader receives the same events
+            return CompletableFuture.completedFuture(null);
+        }
+        List<Publication> publications = prepare(applicationPackages);
+        deletions.forEach(id -> publications.add(prepareDelete(id)));
+        CompletableFuture<Void> future = send(publications, Integer.MAX_VALUE);
+        return serviceDescription ? future.thenCompose(v -> updateOrInsertServiceDescription()) : future;
+    }
+
+    private CompletableFuture<Void> updateOrInsertServiceDescription() {
+        Publication publication;
         try {
-            client.updateOrInsert(catalogEncoder.createServiceInsertion(config));
-        } catch (EncodingException | IOException e) {
-            LOG.warn("Error inserting/updating service description", e);
+            publication = prepareUpsert(config.getServiceIdentifier(), getServiceDescription().toJson());
+        } catch (EncodingException e) {
+            LOG.warn("Error encoding service description", e);
+            return CompletableFuture.completedFuture(null);
+        }
+        if (publication == null) {
+            return CompletableFuture.completedFuture(null);
+        }
+        return send(Collections.singletonList(publication), 1);
+    }
+
+    private CompletableFuture<Void> delete(String id) {
+        Publication publication = prepareDelete(id);
+        return transport.send(Collections.singletonList(publication.getChange())).get(0)
+                        .thenRun(() -> onPublished(publication));
+    }
+
+    /**
+     * Encodes the application packages and records the changed ones in the outbox.
+     */
+    private List<Publication> prepare(Collection<ApplicationPackage> applicationPackages) {
+        List<Publication> publications = new ArrayList<>(applicationPackages.size());
+        for (ApplicationPackage applicationPackage : applicationPackages) {
+            String id = getIdentifier(applicationPackage);
+            try {
+                Publication publication = prepareUpsert(id, catalogEncoder.createProcessInsertion(applicationPackage,
+                                                                                                  config));
+                if (publication != null) {
+                    publications.add(publication);
+                }
+            } catch (EncodingException e) {
+                LOG.warn("Error encoding application package {}", id, e);
+            }
+        }
+        return publications;
+    }
+
+    /**
+     * Records the upsert in the outbox, returning {@code null} if the catalog already acknowledged the same content.
+     */
+    private Publication prepareUpsert(String id, JsonNode node) {
+        String hash = ContentHash.of(node);
+        if (state.isAcknowledged(id, hash)) {
+            LOG.debug("Skipping unchanged record {}", id);
+            skipped.incrementAndGet();
+            return null;
+        }
+        long sequence = record(() -> outbox.upsert(id));
+        return new Publication(CatalogChange.upsert(id, node), sequence, hash);
+    }
+
+    private Publication prepareDelete(String id) {
+        long sequence = record(() -> outbox.delete(id));
+        return new Publication(CatalogChange.delete(id), sequence, null);
+    }
+
+    /**
+     * Sends the publications in the batches of the transport using at most {@code parallelism} concurrent request
+     * chains. Failures are logged, the returned future always completes normally.
+     */
+    private CompletableFuture<Void> send(List<Publication> publications, int parallelism) {
+        if (publications.isEmpty()) {
+            return CompletableFuture.completedFuture(null);
+        }
+        Map<CatalogChange, Publication> byChange = new IdentityHashMap<>(publications.size());
+        publications.forEach(publication -> byChange.put(publication.getChange(), publication));
+        List<List<CatalogChange>> batches = transport.partition(publications.stream()
+                                                                            .map(Publication::getChange)
+                                                                            .collect(Collectors.toList()));
+        int lanes = Math.min(parallelism, batches.size());
+        CompletableFuture<?>[] futures = new CompletableFuture[lanes];
+        for (int lane = 0; lane < lanes; ++lane) {
+            CompletableFuture<Void> future = CompletableFuture.completedFuture(null);
+            for (int i = lane; i < batches.size(); i += lanes) {
+                List<CatalogChange> batch = batches.get(i);
+                future = future.thenCompose(v -> send(batch, byChange));
+            }
+            futures[lane] = future;
+        }
+        return CompletableFuture.allOf(futures);
+    }
+
+    private CompletableFuture<Void> send(List<CatalogChange> batch, Map<CatalogChange, Publication> publications) {
+        List<CompletableFuture<Void>> results = transport.send(batch);
+        CompletableFuture<?>[] futures = new CompletableFuture[batch.size()];
+        for (int i = 0; i < batch.size(); ++i) {
+            Publication publication = publications.get(batch.get(i));
+            futures[i] = results.get(i).thenRun(() -> onPublished(publication)).exceptionally(t -> {
+                LOG.warn("Error publishing {} to {}", publication.getChange(), config.getCatalog().getURL(),
+                         Futures.unwrap(t));
+                return null;
+            });
+        }
+        return CompletableFuture.allOf(futures);
+    }
+
+    private void onPublished(Publication publication) {
+        String id = publication.getChange().getId();
+        acknowledge(id, publication.getSequence());
+        if (publication.getChange().getType() == CatalogChange.Type.DELETE) {
+            state.forget(id);
+        } else {
+            state.acknowledge(id, publication.getHash());
+        }
+    }
+
+    private ServiceDescription getServiceDescription() throws EncodingException {
+        ServiceDescription description = this.serviceDescription;
+        if (description == null) {
+            synchronized (this) {
+                description = this.serviceDescription;
+                if (description == null) {
+                    description = catalogEncoder.createServiceDescription(config);
+                    this.serviceDescription = description;
+                }
+            }
+        }
+        return description;
+    }
+
+    private long record(OutboxOperation operation) {
+        if (outbox != null) {
+            try {
+                return operation.record();
+            } catch (IOException e) {
+                LOG.warn("Error writing to outbox", e);
+            }
+        }
+        return -1;
+    }
+
+    private void acknowledge(String id, long sequence) {
+        if (outbox != null && sequence >= 0) {
+            try {
+                outbox.ack(id, sequence);
+            } catch (IOException e) {
+                LOG.warn("Error writing to outbox", e);
+            }
+        }
+    }
+
+    private void closeFiles() {
+        state.close();
+        if (outbox != null) {
+            try {
+                outbox.close();
+            } catch (IOException e) {
+                LOG.warn("Error closing outbox", e);
+            }
+        }
+    }
+
+    private static String getIdentifier(ApplicationPackage applicationPackage) {
+        return applicationPackage.getProcessDescription().getProcessDescription().getId().getValue();
+    }
+
+    private class Leadership implements CatalogLease.LeadershipListener {
+        @Override
+        public void onAcquired() {
+            LOG.info("Publishing to {}", config.getCatalog().getURL());
+            sync = startSync();
+        }
+
+        @Override
+        public void onRevoked() {
+            LOG.info("Stopped publishing to {}", config.getCatalog().getURL());
+            queue.clear();
+        }
+    }
+
+    @FunctionalInterface
+    private interface OutboxOperation {
+        long record() throws IOException;
+    }
+
+    /**
+     * A change together with its outbox sequence and, for upserts, the hash of the content.
+     */
+    private static final class Publication {
+        private final CatalogChange change;
+        private final long sequence;
+        private final String hash;
+
+        Publication(CatalogChange change, long sequence, String hash) {
+            this.change = change;
+            this.sequence = sequence;
+            this.hash = hash;
+        }
+
+        CatalogChange getChange() {
+            return change;
+        }
+
+        long getSequence() {
+            return sequence;
+        }
+
+        String getHash() {
+            return hash;
         }
     }
 
@@ -20,4 +20,14 @@ public interface CatalogListenerFactory {
     CatalogListener create(String url);
 
     CatalogListener create(String url, String username, String password);
+
+    CatalogListener create(String url, String username, String password, UpsertStrategy upsertStrategy);
+
+    /**
+     * Releases the resources (e.g. meters) that were allocated for a listener that was destroyed.
+     *
+     * @param listener the listener
+     */
+    default void release(CatalogListener listener) {
+    }
 }
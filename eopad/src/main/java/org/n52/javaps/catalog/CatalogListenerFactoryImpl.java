@@ -16,6 +16,11 @@
  */
 package org.n52.javaps.catalog;
 
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
 import okhttp3.HttpUrl;
 import okhttp3.OkHttpClient;
 import org.n52.faroe.Validation;
@@ -25,27 +30,78 @@ import org.n52.iceland.i18n.I18NSettings;
 import org.n52.iceland.ogc.ows.OwsServiceMetadataRepository;
 import org.n52.iceland.service.ServiceSettings;
 import org.n52.janmayen.i18n.LocaleHelper;
+import org.n52.janmayen.lifecycle.Destroyable;
 import org.n52.javaps.catalog.http.BasicAuthenticator;
-import org.n52.javaps.catalog.http.LoggingInterceptor;
-import org.n52.javaps.transactional.TransactionalAlgorithmRepository;
+import org.n52.javaps.catalog.http.HttpClientProvider;
+import org.n52.javaps.catalog.http.InstrumentingInterceptor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
+import java.io.File;
+import java.io.IOException;
 import java.net.URI;
-import java.util.Collections;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Locale;
+import java.util.Map;
 import java.util.Objects;
-import java.util.Optional;
-import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 
 @Component
 @Configurable
-public class CatalogListenerFactoryImpl implements CatalogListenerFactory {
-    private Set<TransactionalAlgorithmRepository> repositories = Collections.emptySet();
+public class CatalogListenerFactoryImpl implements CatalogListenerFactory, Destroyable {
+    private static final Logger LOG = LoggerFactory.getLogger(CatalogListenerFactoryImpl.class);
+    /**
+     * Shared by all listeners, so that the number of threads does not grow with the number of catalogs. The requests
+     * are asynchronous and every listener has its own queue, so a slow catalog does not block the others.
+     */
+    private final ScheduledThreadPoolExecutor scheduler =
+            new ScheduledThreadPoolExecutor(2, createThreadFactory("catalog-publisher"));
+    // heartbeats must not be delayed by the publications, or other instances may take over the lease
+    private final ScheduledExecutorService heartbeatScheduler =
+            Executors.newSingleThreadScheduledExecutor(createThreadFactory("catalog-lease-heartbeat"));
+    private final Map<CatalogListener, List<Meter>> meters = new ConcurrentHashMap<>();
+    private final Map<CatalogListener, String> hosts = new ConcurrentHashMap<>();
+    private ApplicationPackageRegistry applicationPackageRegistry;
     private OwsServiceMetadataRepository serviceMetadataRepository;
-    private HttpUrl serviceURL;
+    private ServiceUrls serviceUrls;
     private Locale defaultLocale;
     private CatalogEncoder catalogEncoder;
+    private HttpClientProvider httpClientProvider;
+    private MeterRegistry meterRegistry;
+    private InstrumentingInterceptor interceptor;
+    private int retryMaxAttempts = 5;
+    private Duration retryInitialBackoff = Duration.ofSeconds(1);
+    private Duration retryMaxBackoff = Duration.ofSeconds(30);
+    private int circuitBreakerFailureThreshold = 5;
+    private Duration circuitBreakerOpenDuration = Duration.ofSeconds(60);
+    private Path outboxDirectory;
+    private Path leaseDirectory;
+    private Duration leaseHeartbeat = Duration.ofSeconds(10);
+    private int batchMaxRecords = 1;
+    private int batchMaxBytes = 1024 * 1024;
+
+    @Autowired
+    public void setHttpClientProvider(HttpClientProvider httpClientProvider) {
+        this.httpClientProvider = Objects.requireNonNull(httpClientProvider);
+    }
+
+    @Autowired
+    public void setMeterRegistry(MeterRegistry meterRegistry) {
+        this.meterRegistry = Objects.requireNonNull(meterRegistry);
+        this.interceptor = new InstrumentingInterceptor(meterRegistry);
+    }
 
     @Autowired
     public void setCatalogEncoder(CatalogEncoder catalogEncoder) {
@@ -57,9 +113,15 @@ public class CatalogListenerFactoryImpl implements CatalogListenerFactory {
         this.serviceMetadataRepository = Objects.requireNonNull(serviceMetadataRepository);
     }
 
-    @Autowired(required = false)
-    public void setRepositories(Set<TransactionalAlgorithmRepository> repositories) {
-        this.repositories = Optional.ofNullable(repositories).orElseGet(Collections::emptySet);
+    @Autowired
+    public void setOutboxDirectory(@Value("${catalog.outbox.directory:${JAVAPS_TMP:${java.io.tmpdir}}/catalog-outbox}")
+                                           String outboxDirectory) {
+        this.outboxDirectory = Paths.get(outboxDirectory);
+    }
+
+    @Autowired
+    public void setApplicationPackageRegistry(ApplicationPackageRegistry applicationPackageRegistry) {
+        this.applicationPackageRegistry = Objects.requireNonNull(applicationPackageRegistry);
     }
 
     @Setting(I18NSettings.I18N_DEFAULT_LANGUAGE)
@@ -79,7 +141,60 @@ public class CatalogListenerFactoryImpl implements CatalogListenerFactory {
             throw new IllegalArgumentException();
         }
         HttpUrl.Builder builder = httpUrl.newBuilder();
-        this.serviceURL = builder.query(null).build();
+        this.serviceUrls = new ServiceUrls(builder.query(null).build());
+    }
+
+    @Setting(CatalogSettings.RETRY_MAX_ATTEMPTS)
+    public void setRetryMaxAttempts(int retryMaxAttempts) {
+        this.retryMaxAttempts = retryMaxAttempts;
+    }
+
+    @Setting(CatalogSettings.RETRY_INITIAL_BACKOFF)
+    public void setRetryInitialBackoff(String retryInitialBackoff) {
+        this.retryInitialBackoff = Duration.parse(retryInitialBackoff);
+    }
+
+    @Setting(CatalogSettings.RETRY_MAX_BACKOFF)
+    public void setRetryMaxBackoff(String retryMaxBackoff) {
+        this.retryMaxBackoff = Duration.parse(retryMaxBackoff);
+    }
+
+    @Setting(CatalogSettings.CIRCUIT_BREAKER_FAILURE_THRESHOLD)
+    public void setCircuitBreakerFailureThreshold(int circuitBreakerFailureThreshold) {
+        this.circuitBreakerFailureThreshold = circuitBreakerFailureThreshold;
+    }
+
+    @Setting(CatalogSettings.CIRCUIT_BREAKER_OPEN_DURATION)
+    public void setCircuitBreakerOpenDuration(String circuitBreakerOpenDuration) {
+        this.circuitBreakerOpenDuration = Duration.parse(circuitBreakerOpenDuration);
+    }
+
+    @Setting(CatalogSettings.LEASE_DIRECTORY)
+    public void setLeaseDirectory(File leaseDirectory) {
+        this.leaseDirectory = leaseDirectory == null ? null : leaseDirectory.toPath();
+    }
+
+    @Setting(CatalogSettings.LEASE_HEARTBEAT)
+    public void setLeaseHeartbeat(String leaseHeartbeat) {
+        this.leaseHeartbeat = Duration.parse(leaseHeartbeat);
+    }
+
+    @Setting(CatalogSettings.PUBLISHER_THREADS)
+    public void setPublisherThreads(int publisherThreads) {
+        if (publisherThreads < 1) {
+            throw new IllegalArgumentException("invalid number of publisher threads: " + publisherThreads);
+        }
+        scheduler.setCorePoolSize(publisherThreads);
+    }
+
+    @Setting(CatalogSettings.BATCH_MAX_RECORDS)
+    public void setBatchMaxRecords(int batchMaxRecords) {
+        this.batchMaxRecords = batchMaxRecords;
+    }
+
+    @Setting(CatalogSettings.BATCH_MAX_BYTES)
+    public void setBatchMaxBytes(int batchMaxBytes) {
+        this.batchMaxBytes = batchMaxBytes;
     }
 
     @Override
@@ -89,18 +204,124 @@ public class CatalogListenerFactoryImpl implements CatalogListenerFactory {
 
     @Override
     public CatalogListener create(String url, String username, String password) {
+        return create(url, username, password, UpsertStrategy.DEFAULT);
+    }
+
+    @Override
+    public CatalogListener create(String url, String username, String password, UpsertStrategy upsertStrategy) {
         Catalog catalog = new CatalogImpl(url);
+        String name = getFileName(catalog);
         CatalogConfiguration catalogConfiguration = new CatalogConfigurationImpl(catalog,
-                                                                                 repositories,
+                                                                                 applicationPackageRegistry,
                                                                                  serviceMetadataRepository,
-                                                                                 serviceURL,
+                                                                                 serviceUrls,
                                                                                  defaultLocale);
-        OkHttpClient.Builder clientBuilder = new OkHttpClient.Builder().addInterceptor(new LoggingInterceptor());
+        // derive from the shared client to reuse its connection pool and dispatcher
+        OkHttpClient.Builder clientBuilder = httpClientProvider.get().newBuilder()
+                                                               .addInterceptor(interceptor);
         if (username != null && !username.isEmpty() && password != null && !password.isEmpty()) {
             clientBuilder.authenticator(new BasicAuthenticator(username, password));
         }
-        CatalogClient catalogClient = new CatalogClientImpl(catalogConfiguration, clientBuilder.build());
-        return new CatalogListener(catalogConfiguration, catalogEncoder, catalogClient);
+        OkHttpClient httpClient = clientBuilder.build();
+        CatalogClientImpl catalogClient = new CatalogClientImpl(catalogConfiguration, httpClient, upsertStrategy);
+        CircuitBreaker circuitBreaker = new CircuitBreaker(url, circuitBreakerFailureThreshold,
+                                                           circuitBreakerOpenDuration);
+        ResilientCatalogClient resilientClient = new ResilientCatalogClient(catalogClient,
+                                                                            new RetryPolicy(retryMaxAttempts,
+                                                                                            retryInitialBackoff,
+                                                                                            retryMaxBackoff),
+                                                                            circuitBreaker, scheduler);
+        // a single record per batch needs no bulk endpoint
+        CatalogTransport transport = batchMaxRecords > 1
+                                     ? new BulkCatalogTransport(catalogConfiguration, httpClient, resilientClient,
+                                                                batchMaxRecords, batchMaxBytes)
+                                     : new SingleRecordCatalogTransport(resilientClient);
+        CatalogListener listener = new CatalogListener(catalogConfiguration, catalogEncoder, resilientClient,
+                                                       transport, scheduler, createOutbox(name),
+                                                       createState(name), createLease(name));
+        meters.put(listener, bindMetrics(catalog, catalogClient, resilientClient, circuitBreaker, listener));
+        hosts.put(listener, catalog.getURL().host());
+        return listener;
+    }
+
+    @Override
+    public void release(CatalogListener listener) {
+        List<Meter> bound = meters.remove(listener);
+        if (bound != null) {
+            bound.forEach(meterRegistry::remove);
+        }
+        // the request meters are shared by all catalogs on the same host
+        String host = hosts.remove(listener);
+        if (host != null && !hosts.containsValue(host)) {
+            interceptor.release(host);
+        }
+    }
+
+    private List<Meter> bindMetrics(Catalog catalog, CatalogClientImpl catalogClient,
+                                    ResilientCatalogClient resilientClient, CircuitBreaker circuitBreaker,
+                                    CatalogListener listener) {
+        Tags tags = Tags.of("host", catalog.getURL().host());
+        return Arrays.asList(
+                FunctionCounter.builder("catalog.upsert.saved", catalogClient, CatalogClientImpl::getSavedRequests)
+                               .description("existence checks saved by the upsert strategy")
+                               .tags(tags).register(meterRegistry),
+                FunctionCounter.builder("catalog.retries", resilientClient, ResilientCatalogClient::getRetries)
+                               .tags(tags).register(meterRegistry),
+                FunctionCounter.builder("catalog.publications.skipped", listener, CatalogListener::getSkipped)
+                               .description("publications of unchanged records that were skipped")
+                               .tags(tags).register(meterRegistry),
+                Gauge.builder("catalog.circuitbreaker.state", circuitBreaker, cb -> cb.getState().ordinal())
+                     .description("0 = closed, 1 = open, 2 = half-open")
+                     .tags(tags).register(meterRegistry),
+                FunctionCounter.builder("catalog.circuitbreaker.rejected", circuitBreaker, CircuitBreaker::getRejected)
+                               .tags(tags).register(meterRegistry),
+                FunctionCounter.builder("catalog.circuitbreaker.opened", circuitBreaker, CircuitBreaker::getOpened)
+                               .tags(tags).register(meterRegistry));
+    }
+
+    private CatalogOutbox createOutbox(String name) {
+        if (outboxDirectory == null) {
+            return null;
+        }
+        try {
+            return new CatalogOutbox(outboxDirectory.resolve(name + ".outbox"));
+        } catch (IOException e) {
+            LOG.error("Could not open outbox {}, publications will not be recorded", name, e);
+            return null;
+        }
+    }
+
+    private CatalogState createState(String name) {
+        return new CatalogState(outboxDirectory == null ? null : outboxDirectory.resolve(name + ".state"), scheduler,
+                                CatalogState.DEFAULT_SAVE_DELAY);
+    }
+
+    private CatalogLease createLease(String name) {
+        if (leaseDirectory == null) {
+            // not shared with other instances
+            return new InMemoryCatalogLease();
+        }
+        return new FileCatalogLease(leaseDirectory, name, heartbeatScheduler, leaseHeartbeat);
+    }
+
+    private static String getFileName(Catalog catalog) {
+        HttpUrl url = catalog.getURL();
+        return (url.host() + url.encodedPath()).replaceAll("[^A-Za-z0-9.-]+", "_");
+    }
+
+    private static ThreadFactory createThreadFactory(String name) {
+        AtomicInteger count = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, name + "-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    @Override
+    public void destroy() {
+        scheduler.shutdownNow();
+        heartbeatScheduler.shutdownNow();
     }
 
 }
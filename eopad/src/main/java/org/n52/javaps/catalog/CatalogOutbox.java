@@ -0,0 +1,293 @@
+/*
+ * Copyright 2019-2020 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.n52.javaps.catalog;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only, file-backed outbox for the publications to a single catalog. Every upsert and delete is recorded
+ * before it is sent and acknowledged after the catalog accepted it, so that pending publications survive a restart.
+ * Only the latest pending publication per identifier is kept; the file is compacted if it mostly consists of
+ * superseded or acknowledged records.
+ * <p>
+ * Upserts are only recorded to supersede pending deletions of the same identifier, their content is not stored as
+ * it is published again by the initial sync anyway. For the same reason, only deletions are forced to disk: a lost
+ * upsert or acknowledgement only causes an idempotent deletion to be replayed before the sync.
+ * <p>
+ * Each record is stored as {@code length (int), type (byte), sequence (long), id length (short), id (UTF-8),
+ * CRC32 (int)}. A truncated or corrupt tail, e.g. from a crash while writing, is discarded on opening.
+ */
+public class CatalogOutbox implements Closeable {
+    private static final Logger LOG = LoggerFactory.getLogger(CatalogOutbox.class);
+    private static final int HEADER_LENGTH = Integer.BYTES;
+    private static final int FIXED_LENGTH = Byte.BYTES + Long.BYTES + Short.BYTES;
+    private static final int TRAILER_LENGTH = Integer.BYTES;
+    private static final int MAX_RECORD_LENGTH = FIXED_LENGTH + Short.MAX_VALUE;
+    private static final int COMPACTION_THRESHOLD = 1024;
+    private final Map<String, Entry> pending = new LinkedHashMap<>();
+    private final Path file;
+    private FileChannel channel;
+    private long sequence;
+    private int records;
+
+    public CatalogOutbox(Path file) throws IOException {
+        this.file = Objects.requireNonNull(file);
+        Files.createDirectories(file.toAbsolutePath().getParent());
+        this.channel = open(file);
+        read();
+        if (records > pending.size()) {
+            compact();
+        }
+    }
+
+    /**
+     * Records a pending insertion or update.
+     *
+     * @param id the identifier of the record
+     * @return the sequence number to acknowledge
+     * @throws IOException if the record could not be written
+     */
+    public synchronized long upsert(String id) throws IOException {
+        return append(Type.UPSERT, id);
+    }
+
+    /**
+     * Records a pending deletion.
+     *
+     * @param id the identifier of the record
+     * @return the sequence number to acknowledge
+     * @throws IOException if the record could not be written
+     */
+    public synchronized long delete(String id) throws IOException {
+        return append(Type.DELETE, id);
+    }
+
+    /**
+     * Acknowledges a publication. Acknowledgements of superseded publications are ignored.
+     *
+     * @param id       the identifier of the record
+     * @param sequence the sequence number of the publication
+     * @throws IOException if the acknowledgement could not be written
+     */
+    public synchronized void ack(String id, long sequence) throws IOException {
+        Entry entry = pending.get(id);
+        if (entry == null || entry.getSequence() != sequence) {
+            return;
+        }
+        write(Type.ACK, sequence, id);
+        pending.remove(id);
+        if (records - pending.size() > COMPACTION_THRESHOLD && records > 2 * pending.size()) {
+            compact();
+        }
+    }
+
+    /**
+     * Get the pending publications in the order they were recorded.
+     *
+     * @return the pending publications
+     */
+    public synchronized List<Entry> getPending() {
+        return Collections.unmodifiableList(new ArrayList<>(pending.values()));
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        channel.close();
+    }
+
+    private long append(Type type, String id) throws IOException {
+        long seq = ++sequence;
+        write(type, seq, id);
+        pending.remove(id);
+        pending.put(id, new Entry(type, seq, id));
+        return seq;
+    }
+
+    private void write(Type type, long seq, String id) throws IOException {
+        write(channel, type, seq, id);
+        if (type == Type.DELETE) {
+            channel.force(false);
+        }
+        records++;
+    }
+
+    private void read() throws IOException {
+        long position = 0;
+        long size = channel.size();
+        ByteBuffer header = ByteBuffer.allocate(HEADER_LENGTH);
+        while (position + HEADER_LENGTH <= size) {
+            header.clear();
+            readFully(header, position);
+            int length = header.getInt(0);
+            if (length < FIXED_LENGTH || length > MAX_RECORD_LENGTH
+                || position + HEADER_LENGTH + length + TRAILER_LENGTH > size) {
+                break;
+            }
+            ByteBuffer buffer = ByteBuffer.allocate(length + TRAILER_LENGTH);
+            readFully(buffer, position + HEADER_LENGTH);
+            CRC32 crc = new CRC32();
+            crc.update(buffer.array(), 0, length);
+            if ((int) crc.getValue() != buffer.getInt(length)) {
+                break;
+            }
+            buffer.limit(length);
+            Type type = Type.valueOf(buffer.get());
+            long seq = buffer.getLong();
+            short idLength = buffer.getShort();
+            if (type == null || idLength != buffer.remaining()) {
+                break;
+            }
+            byte[] id = new byte[idLength];
+            buffer.get(id);
+            apply(type, seq, new String(id, StandardCharsets.UTF_8));
+            sequence = Math.max(sequence, seq);
+            records++;
+            position += HEADER_LENGTH + length + TRAILER_LENGTH;
+        }
+        if (position < size) {
+            LOG.warn("Discarding {} bytes of corrupt or truncated records in {}", size - position, file);
+            channel.truncate(position);
+        }
+        channel.position(position);
+    }
+
+    private void apply(Type type, long seq, String id) {
+        if (type == Type.ACK) {
+            Entry entry = pending.get(id);
+            if (entry != null && entry.getSequence() == seq) {
+                pending.remove(id);
+            }
+        } else {
+            pending.remove(id);
+            pending.put(id, new Entry(type, seq, id));
+        }
+    }
+
+    private void readFully(ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new IOException("unexpected end of file " + file);
+            }
+        }
+        buffer.flip();
+    }
+
+    private void compact() throws IOException {
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (FileChannel out = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                                                StandardOpenOption.TRUNCATE_EXISTING)) {
+            for (Entry entry : pending.values()) {
+                write(out, entry.getType(), entry.getSequence(), entry.getId());
+            }
+            out.force(true);
+        }
+        channel.close();
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        channel = open(file);
+        channel.position(channel.size());
+        LOG.debug("Compacted {} from {} to {} records", file, records, pending.size());
+        records = pending.size();
+    }
+
+    private static FileChannel open(Path file) throws IOException {
+        return FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+    }
+
+    private static void write(FileChannel channel, Type type, long seq, String id) throws IOException {
+        byte[] idBytes = id.getBytes(StandardCharsets.UTF_8);
+        if (idBytes.length > Short.MAX_VALUE) {
+            throw new IOException("identifier too long: " + id);
+        }
+        int length = FIXED_LENGTH + idBytes.length;
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_LENGTH + length + TRAILER_LENGTH);
+        buffer.putInt(length).put(type.getCode()).putLong(seq).putShort((short) idBytes.length).put(idBytes);
+        CRC32 crc = new CRC32();
+        crc.update(buffer.array(), HEADER_LENGTH, length);
+        buffer.putInt((int) crc.getValue());
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    public enum Type {
+        UPSERT(1),
+        DELETE(2),
+        ACK(3);
+
+        private final byte code;
+
+        Type(int code) {
+            this.code = (byte) code;
+        }
+
+        byte getCode() {
+            return code;
+        }
+
+        static Type valueOf(byte code) {
+            for (Type type : values()) {
+                if (type.code == code) {
+                    return type;
+                }
+            }
+            return null;
+        }
+    }
+
+    public static final class Entry {
+        private final Type type;
+        private final long sequence;
+        private final String id;
+
+        Entry(Type type, long sequence, String id) {
+            this.type = type;
+            this.sequence = sequence;
+            this.id = id;
+        }
+
+        public Type getType() {
+            return type;
+        }
+
+        public long getSequence() {
+            return sequence;
+        }
+
+        public String getId() {
+            return id;
+        }
+    }
+}
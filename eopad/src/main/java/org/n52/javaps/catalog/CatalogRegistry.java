@@ -0,0 +1,372 @@
+/*
+ * Copyright 2019-2020 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.n52.javaps.catalog;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.n52.faroe.ConfigurationError;
+import org.n52.faroe.SettingsService;
+import org.n52.faroe.annotation.Configurable;
+import org.n52.faroe.annotation.Setting;
+import org.n52.janmayen.lifecycle.Constructable;
+import org.n52.janmayen.lifecycle.Destroyable;
+import org.n52.javaps.transactional.TransactionalAlgorithmRepositoryListener;
+import org.n52.shetland.ogc.wps.ap.ApplicationPackage;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.stream.Collectors;
+
+/**
+ * Manages the {@link CatalogListener}s of all catalogs the service publishes to. The catalogs are read from the JSON
+ * file of the setting {@value CatalogSettings#REGISTRY_FILE}, or, if none is configured, are the
+ * {@link CatalogEndpoint} beans of the application context:
+ * <pre>
+ * [
+ *   { "name": "deimos", "url": "http://catalog.example.org/smi/", "upsert": "CACHED" },
+ *   { "name": "gmu", "url": "https://catalog.example.com/cat/", "username": "${GMU_USERNAME}",
+ *     "password": "${GMU_PASSWORD}" }
+ * ]
+ * </pre>
+ * Placeholders in the credentials are resolved against the Spring environment, so that the file does not need to
+ * contain them. Changing the setting reloads the file and only restarts the listeners of catalogs that were changed.
+ * <p>
+ * Reloads are serialized, but the listeners are destroyed and the initial syncs are awaited without holding the
+ * monitor of the registry, so that the forwarding of events and {@link #getEndpoints()} are not blocked by them.
+ * <p>
+ * The registry is the only repository listener for all catalogs and forwards the events to the listeners. As the
+ * listeners build the service description from the {@link ApplicationPackageRegistry}, the events are applied to it
+ * first, independent of the order in which the repository notifies its listeners. All listeners are created by the
+ * same {@link CatalogListenerFactory}, so they share its HTTP client, and their initial syncs run concurrently.
+ */
+@Component
+@Configurable
+public class CatalogRegistry implements TransactionalAlgorithmRepositoryListener, Constructable, Destroyable {
+    private static final Logger LOG = LoggerFactory.getLogger(CatalogRegistry.class);
+    private static final String NAME = "name";
+    private static final String URL = "url";
+    private static final String USERNAME = "username";
+    private static final String PASSWORD = "password";
+    private static final String UPSERT = "upsert";
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final Object reloadLock = new Object();
+    private final Map<String, Registration> registrations = new LinkedHashMap<>();
+    private volatile List<CatalogListener> listeners = Collections.emptyList();
+    private CatalogListenerFactory catalogListenerFactory;
+    private ApplicationPackageRegistry applicationPackageRegistry;
+    private SettingsService settingsService;
+    private Environment environment;
+    private List<CatalogEndpoint> defaultEndpoints = Collections.emptyList();
+    private Duration syncDeadline = Duration.ofSeconds(30);
+    private Path file;
+    private boolean initialized;
+
+    @Autowired
+    public void setCatalogListenerFactory(CatalogListenerFactory catalogListenerFactory) {
+        this.catalogListenerFactory = Objects.requireNonNull(catalogListenerFactory);
+    }
+
+    @Autowired
+    public void setApplicationPackageRegistry(ApplicationPackageRegistry applicationPackageRegistry) {
+        this.applicationPackageRegistry = Objects.requireNonNull(applicationPackageRegistry);
+    }
+
+    @Autowired
+    public void setSettingsService(SettingsService settingsService) {
+        this.settingsService = Objects.requireNonNull(settingsService);
+    }
+
+    @Autowired
+    public void setEnvironment(Environment environment) {
+        this.environment = Objects.requireNonNull(environment);
+    }
+
+    @Autowired(required = false)
+    public void setDefaultEndpoints(List<CatalogEndpoint> defaultEndpoints) {
+        this.defaultEndpoints = new ArrayList<>(defaultEndpoints);
+    }
+
+    @Setting(CatalogSettings.SYNC_DEADLINE)
+    public void setSyncDeadline(String deadline) {
+        this.syncDeadline = Duration.parse(deadline);
+    }
+
+    @Setting(CatalogSettings.REGISTRY_FILE)
+    public void setFile(File file) {
+        boolean reload;
+        synchronized (this) {
+            this.file = file == null ? null : file.toPath();
+            reload = initialized;
+        }
+        if (reload) {
+            reload();
+        }
+    }
+
+    @Override
+    public void init() {
+        synchronized (this) {
+            initialized = true;
+        }
+        reload();
+    }
+
+    @Override
+    public void destroy() {
+        synchronized (reloadLock) {
+            List<Registration> removed;
+            synchronized (this) {
+                initialized = false;
+                removed = new ArrayList<>(registrations.values());
+                registrations.clear();
+                updateListeners();
+            }
+            stop(removed);
+        }
+    }
+
+    /**
+     * Get the endpoints of all registered catalogs.
+     *
+     * @return the endpoints
+     */
+    public synchronized List<CatalogEndpoint> getEndpoints() {
+        return registrations.values().stream().map(Registration::getEndpoint).collect(Collectors.toList());
+    }
+
+    @Override
+    public void onRegister(ApplicationPackage applicationPackage) {
+        applicationPackageRegistry.onRegister(applicationPackage);
+        for (CatalogListener listener : listeners) {
+            listener.onRegister(applicationPackage);
+        }
+    }
+
+    @Override
+    public void onUnregister(ApplicationPackage applicationPackage) {
+        applicationPackageRegistry.onUnregister(applicationPackage);
+        for (CatalogListener listener : listeners) {
+            listener.onUnregister(applicationPackage);
+        }
+    }
+
+    /**
+     * Applies the configured endpoints, restarting only the listeners of changed catalogs, and waits for the initial
+     * syncs of the new listeners.
+     */
+    private void reload() {
+        List<CompletableFuture<Void>> syncs = new ArrayList<>();
+        synchronized (reloadLock) {
+            Path path;
+            synchronized (this) {
+                path = this.file;
+            }
+            Map<String, CatalogEndpoint> endpoints = new LinkedHashMap<>();
+            for (CatalogEndpoint endpoint : path == null ? defaultEndpoints : load(path)) {
+                if (endpoints.put(endpoint.getName(), endpoint) != null) {
+                    throw new ConfigurationError("duplicate catalog name: %s", endpoint.getName());
+                }
+            }
+            // stop forwarding events to removed or changed catalogs before their listeners are destroyed
+            List<Registration> removed = new ArrayList<>();
+            synchronized (this) {
+                registrations.values().removeIf(registration -> {
+                    CatalogEndpoint endpoint = endpoints.get(registration.getEndpoint().getName());
+                    if (endpoint == null || !endpoint.equals(registration.getEndpoint())) {
+                        removed.add(registration);
+                        return true;
+                    }
+                    return false;
+                });
+                updateListeners();
+            }
+            // a changed catalog may have the same URL, so the old listener has to be gone before the new one starts
+            stop(removed);
+            for (CatalogEndpoint endpoint : endpoints.values()) {
+                synchronized (this) {
+                    if (registrations.containsKey(endpoint.getName())) {
+                        continue;
+                    }
+                }
+                syncs.add(start(endpoint));
+            }
+        }
+        awaitSyncs(syncs);
+    }
+
+    private CompletableFuture<Void> start(CatalogEndpoint endpoint) {
+        LOG.info("Adding catalog {}", endpoint);
+        CatalogListener listener = catalogListenerFactory.create(endpoint.getURL(), endpoint.getUsername(),
+                                                                 endpoint.getPassword(),
+                                                                 endpoint.getUpsertStrategy());
+        // not created by the application context, so not configured by it either
+        settingsService.configure(listener);
+        // forward events before the initial sync, so that none between its snapshot and the registration is lost
+        synchronized (this) {
+            registrations.put(endpoint.getName(), new Registration(endpoint, listener));
+            updateListeners();
+        }
+        return listener.start();
+    }
+
+    /**
+     * Stops the listeners concurrently, so that stopping takes as long as the slowest listener and not their sum.
+     */
+    private void stop(List<Registration> removed) {
+        if (removed.size() <= 1) {
+            removed.forEach(this::stop);
+            return;
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(removed.size(), runnable -> {
+            Thread thread = new Thread(runnable, "catalog-shutdown");
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            CompletableFuture.allOf(removed.stream()
+                                           .map(registration -> CompletableFuture.runAsync(() -> stop(registration),
+                                                                                           executor))
+                                           .toArray(CompletableFuture[]::new))
+                             .join();
+        } catch (CompletionException e) {
+            LOG.warn("Error removing catalog", Futures.unwrap(e));
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    private void stop(Registration registration) {
+        LOG.info("Removing catalog {}", registration.getEndpoint());
+        try {
+            registration.getListener().destroy();
+        } finally {
+            catalogListenerFactory.release(registration.getListener());
+        }
+    }
+
+    private void updateListeners() {
+        this.listeners = registrations.values().stream().map(Registration::getListener)
+                                      .collect(Collectors.collectingAndThen(Collectors.toList(),
+                                                                            Collections::unmodifiableList));
+    }
+
+    /**
+     * Waits for the initial syncs, but not longer than the deadline in total; they continue in the background.
+     */
+    private void awaitSyncs(Collection<CompletableFuture<Void>> syncs) {
+        if (syncs.isEmpty()) {
+            return;
+        }
+        try {
+            CompletableFuture.allOf(syncs.toArray(new CompletableFuture[0]))
+                             .get(syncDeadline.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            LOG.warn("Interrupted while waiting for the initial syncs");
+        } catch (ExecutionException e) {
+            LOG.warn("Error during initial sync", Futures.unwrap(e));
+        } catch (TimeoutException e) {
+            LOG.info("Initial syncs did not finish within {}, continuing in the background", syncDeadline);
+        }
+    }
+
+    private List<CatalogEndpoint> load(Path path) {
+        if (!Files.exists(path)) {
+            LOG.info("Catalog registry {} does not exist, starting without catalogs", path);
+            return Collections.emptyList();
+        }
+        JsonNode endpoints;
+        try (InputStream in = Files.newInputStream(path)) {
+            endpoints = objectMapper.readTree(in);
+        } catch (IOException e) {
+            throw new ConfigurationError(String.format("Error reading catalog registry %s", path), e);
+        }
+        if (!endpoints.isArray()) {
+            throw new ConfigurationError("catalog registry %s is not a JSON array", path);
+        }
+        List<CatalogEndpoint> list = new ArrayList<>(endpoints.size());
+        for (JsonNode endpoint : endpoints) {
+            String name = endpoint.path(NAME).textValue();
+            String url = endpoint.path(URL).textValue();
+            if (name == null || url == null) {
+                throw new ConfigurationError("catalog without name or url in %s: %s", path, endpoint);
+            }
+            UpsertStrategy upsertStrategy;
+            try {
+                upsertStrategy = UpsertStrategy.valueOf(endpoint.path(UPSERT)
+                                                                .asText(UpsertStrategy.DEFAULT.name()));
+            } catch (IllegalArgumentException e) {
+                throw new ConfigurationError(String.format("invalid upsert strategy of %s in %s", name, path), e);
+            }
+            list.add(new CatalogEndpoint(name, url, resolve(endpoint.path(USERNAME).textValue()),
+                                         resolve(endpoint.path(PASSWORD).textValue()), upsertStrategy));
+        }
+        return list;
+    }
+
+    private String resolve(String value) {
+        if (value == null) {
+            return null;
+        }
+        try {
+            return environment.resolveRequiredPlaceholders(value);
+        } catch (IllegalArgumentException e) {
+            throw new ConfigurationError("Error resolving catalog credentials", e);
+        }
+    }
+
+    private static final class Registration {
+        private final CatalogEndpoint endpoint;
+        private final CatalogListener listener;
+
+        Registration(CatalogEndpoint endpoint, CatalogListener listener) {
+            this.endpoint = endpoint;
+            this.listener = listener;
+        }
+
+        CatalogEndpoint getEndpoint() {
+            return endpoint;
+        }
+
+        CatalogListener getListener() {
+            return listener;
+        }
+    }
+}
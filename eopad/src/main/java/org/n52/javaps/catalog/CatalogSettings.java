@@ -0,0 +1,43 @@
+/*
+ * Copyright 2019-2020 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.n52.javaps.catalog;
+
+public interface CatalogSettings {
+    String PUBLICATION_WINDOW = "catalog.publication.window";
+    String PUBLICATION_FLUSH_THRESHOLD = "catalog.publication.flushThreshold";
+    String PUBLISHER_THREADS = "catalog.publisher.threads";
+    String SYNC_PARALLELISM = "catalog.sync.parallelism";
+    String SYNC_DEADLINE = "catalog.sync.deadline";
+    String RECONCILIATION_INTERVAL = "catalog.reconciliation.interval";
+    String LEASE_DIRECTORY = "catalog.lease.directory";
+    String LEASE_HEARTBEAT = "catalog.lease.heartbeat";
+    String RETRY_MAX_ATTEMPTS = "catalog.retry.maxAttempts";
+    String RETRY_INITIAL_BACKOFF = "catalog.retry.initialBackoff";
+    String RETRY_MAX_BACKOFF = "catalog.retry.maxBackoff";
+    String CIRCUIT_BREAKER_FAILURE_THRESHOLD = "catalog.circuitBreaker.failureThreshold";
+    String CIRCUIT_BREAKER_OPEN_DURATION = "catalog.circuitBreaker.openDuration";
+    String HTTP_MAX_IDLE_CONNECTIONS = "catalog.http.maxIdleConnections";
+    String HTTP_KEEP_ALIVE = "catalog.http.keepAlive";
+    String HTTP_MAX_REQUESTS = "catalog.http.maxRequests";
+    String HTTP_MAX_REQUESTS_PER_HOST = "catalog.http.maxRequestsPerHost";
+    String HTTP_CONNECT_TIMEOUT = "catalog.http.connectTimeout";
+    String HTTP_READ_TIMEOUT = "catalog.http.readTimeout";
+    String HTTP_HTTP2 = "catalog.http.http2";
+    String BATCH_MAX_RECORDS = "catalog.batch.maxRecords";
+    String BATCH_MAX_BYTES = "catalog.batch.maxBytes";
+    String REGISTRY_FILE = "catalog.registry.file";
+}
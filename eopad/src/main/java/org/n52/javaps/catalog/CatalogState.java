@@ -0,0 +1,176 @@
+/*
+ * Copyright 2019-2020 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.n52.javaps.catalog;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The content hashes of the records a single catalog acknowledged. If a file is given, the hashes are persisted, so
+ * that unchanged records are not published again after a restart.
+ * <p>
+ * Changes are not written immediately but at most once per save delay, and finally on {@link #close()}, so that
+ * acknowledging many records, e.g. during the initial sync, does not rewrite the file for every record. Without a
+ * scheduler, the state is only written on {@link #close()}.
+ */
+public class CatalogState implements Closeable {
+    public static final Duration DEFAULT_SAVE_DELAY = Duration.ofSeconds(1);
+    private static final Logger LOG = LoggerFactory.getLogger(CatalogState.class);
+    private final Map<String, String> hashes = new HashMap<>();
+    private final Object writeLock = new Object();
+    private final Path file;
+    private final ScheduledExecutorService scheduler;
+    private final Duration saveDelay;
+    private boolean dirty;
+    private boolean closed;
+    private ScheduledFuture<?> save;
+
+    /**
+     * Creates a new state that is only written on {@link #close()}.
+     *
+     * @param file the file to persist the state in, may be {@code null}
+     */
+    public CatalogState(Path file) {
+        this(file, null, DEFAULT_SAVE_DELAY);
+    }
+
+    /**
+     * Creates a new state.
+     *
+     * @param file      the file to persist the state in, may be {@code null}
+     * @param scheduler the scheduler to write the state, may be {@code null}
+     * @param saveDelay the delay after a change before the state is written
+     */
+    public CatalogState(Path file, ScheduledExecutorService scheduler, Duration saveDelay) {
+        this.file = file;
+        this.scheduler = scheduler;
+        this.saveDelay = saveDelay;
+        if (file != null) {
+            load();
+        }
+    }
+
+    public synchronized boolean isAcknowledged(String id, String hash) {
+        return hash.equals(hashes.get(id));
+    }
+
+    public synchronized void acknowledge(String id, String hash) {
+        if (!hash.equals(hashes.put(id, hash))) {
+            changed();
+        }
+    }
+
+    public synchronized void forget(String id) {
+        if (hashes.remove(id) != null) {
+            changed();
+        }
+    }
+
+    /**
+     * Get the identifiers of all acknowledged records.
+     *
+     * @return the identifiers
+     */
+    public synchronized Set<String> getIdentifiers() {
+        return new HashSet<>(hashes.keySet());
+    }
+
+    /**
+     * Writes pending changes and stops the scheduled writes.
+     */
+    @Override
+    public void close() {
+        synchronized (this) {
+            closed = true;
+            if (save != null) {
+                save.cancel(false);
+                save = null;
+            }
+        }
+        save();
+    }
+
+    private void changed() {
+        dirty = true;
+        // the scheduler is shared and may already be shut down after closing
+        if (file != null && scheduler != null && save == null && !closed) {
+            save = scheduler.schedule(this::save, saveDelay.toMillis(), TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private void load() {
+        Properties properties = new Properties();
+        try (InputStream in = Files.newInputStream(file)) {
+            properties.load(in);
+        } catch (NoSuchFileException e) {
+            return;
+        } catch (IOException e) {
+            LOG.warn("Error reading catalog state {}", file, e);
+            return;
+        }
+        properties.stringPropertyNames().forEach(id -> hashes.put(id, properties.getProperty(id)));
+    }
+
+    private void save() {
+        if (file == null) {
+            return;
+        }
+        // write outside of the monitor, so that acknowledgements are not blocked by the I/O
+        synchronized (writeLock) {
+            Properties properties = new Properties();
+            synchronized (this) {
+                save = null;
+                if (!dirty) {
+                    return;
+                }
+                dirty = false;
+                properties.putAll(hashes);
+            }
+            Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+            try {
+                Files.createDirectories(file.toAbsolutePath().getParent());
+                try (OutputStream out = Files.newOutputStream(tmp)) {
+                    properties.store(out, null);
+                }
+                Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (IOException e) {
+                LOG.warn("Error writing catalog state {}", file, e);
+                synchronized (this) {
+                    dirty = true;
+                }
+            }
+        }
+    }
+}
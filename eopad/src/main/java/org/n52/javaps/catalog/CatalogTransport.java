@@ -0,0 +1,45 @@
+/*
+ * Copyright 2019-2020 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.n52.javaps.catalog;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Transport of record changes to a catalog. Implementations may combine several changes into a single request if the
+ * catalog offers a batch or bulk endpoint; the default is the {@link SingleRecordCatalogTransport} that sends every
+ * change with its own request(s).
+ */
+public interface CatalogTransport {
+    /**
+     * Splits the changes into batches that are sent with a single call of {@link #send(List)} each. The order of the
+     * changes is preserved.
+     *
+     * @param changes the changes
+     * @return the batches
+     */
+    List<List<CatalogChange>> partition(List<CatalogChange> changes);
+
+    /**
+     * Sends a batch that was created by {@link #partition(List)}.
+     *
+     * @param batch the batch
+     * @return a future for every change of the batch, in the same order, that completes once the catalog has
+     *         acknowledged the change
+     */
+    List<CompletableFuture<Void>> send(List<CatalogChange> batch);
+}
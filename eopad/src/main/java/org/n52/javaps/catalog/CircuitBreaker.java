@@ -0,0 +1,172 @@
+/*
+ * Copyright 2019-2020 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.n52.javaps.catalog;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Circuit breaker for a single catalog. After {@code failureThreshold} consecutive failures the breaker opens and
+ * rejects all requests for {@code openDuration}. Afterwards a single probe request is permitted; the breaker closes
+ * if it succeeds and opens again otherwise.
+ */
+public class CircuitBreaker {
+    private static final Logger LOG = LoggerFactory.getLogger(CircuitBreaker.class);
+    private final String name;
+    private final int failureThreshold;
+    private final Duration openDuration;
+    private final Clock clock;
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong opened = new AtomicLong();
+    private State state = State.CLOSED;
+    private int failures;
+    private Instant openedAt;
+
+    public CircuitBreaker(String name, int failureThreshold, Duration openDuration) {
+        this(name, failureThreshold, openDuration, Clock.systemUTC());
+    }
+
+    public CircuitBreaker(String name, int failureThreshold, Duration openDuration, Clock clock) {
+        if (failureThreshold < 1) {
+            throw new IllegalArgumentException("invalid failure threshold: " + failureThreshold);
+        }
+        this.name = Objects.requireNonNull(name);
+        this.failureThreshold = failureThreshold;
+        this.openDuration = Objects.requireNonNull(openDuration);
+        this.clock = Objects.requireNonNull(clock);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public synchronized State getState() {
+        return state;
+    }
+
+    /**
+     * Get the number of requests that were rejected because the breaker was open.
+     *
+     * @return the number of rejected requests
+     */
+    public long getRejected() {
+        return rejected.get();
+    }
+
+    /**
+     * Get the number of times the breaker opened.
+     *
+     * @return the number of transitions to {@link State#OPEN}
+     */
+    public long getOpened() {
+        return opened.get();
+    }
+
+    /**
+     * Checks if a request is permitted. Every permitted request has to be followed by a call to {@link #onSuccess()},
+     * {@link #onFailure()} or {@link #release()}.
+     *
+     * @throws OpenException if the request is not permitted
+     */
+    public synchronized void acquire() throws OpenException {
+        switch (state) {
+            case CLOSED:
+                return;
+            case OPEN:
+                if (!clock.instant().isBefore(openedAt.plus(openDuration))) {
+                    transition(State.HALF_OPEN);
+                    return;
+                }
+                break;
+            case HALF_OPEN:
+            default:
+                // only a single probe
+                break;
+        }
+        rejected.incrementAndGet();
+        throw new OpenException(name);
+    }
+
+    public synchronized void onSuccess() {
+        failures = 0;
+        if (state != State.CLOSED) {
+            transition(State.CLOSED);
+        }
+    }
+
+    /**
+     * Returns the permit of a request that was not sent, e.g. because it could not be created. A probe permit is
+     * available again afterwards.
+     */
+    public synchronized void release() {
+        if (state == State.HALF_OPEN) {
+            // the open duration already elapsed, so the next request is permitted as probe
+            transition(State.OPEN);
+        }
+    }
+
+    public synchronized void onFailure() {
+        if (state == State.OPEN) {
+            // a request that was in flight when the breaker opened
+            return;
+        }
+        if (state == State.HALF_OPEN || ++failures >= failureThreshold) {
+            open();
+        }
+    }
+
+    private void open() {
+        failures = 0;
+        openedAt = clock.instant();
+        opened.incrementAndGet();
+        transition(State.OPEN);
+    }
+
+    private void transition(State newState) {
+        LOG.info("Circuit breaker {}: {} -> {}", name, state, newState);
+        state = newState;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s{name=%s, state=%s}", getClass().getSimpleName(), name, getState());
+    }
+
+    public enum State {
+        CLOSED,
+        OPEN,
+        HALF_OPEN
+    }
+
+    /**
+     * Exception for requests that are rejected by an open circuit breaker.
+     */
+    public static class OpenException extends IOException {
+        private static final long serialVersionUID = 1L;
+
+        public OpenException(String name) {
+            super(String.format("circuit breaker for %s is open", name));
+        }
+    }
+}
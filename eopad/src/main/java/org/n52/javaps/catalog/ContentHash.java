@@ -0,0 +1,107 @@
+/*
+ * Copyright 2019-2020 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.n52.javaps.catalog;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Stable SHA-256 hash of catalog features. Object members are hashed in the order of their names and the
+ * {@code properties.updated} member of the feature is ignored, so that two encodings of the same content have the
+ * same hash.
+ */
+public final class ContentHash {
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private ContentHash() {
+    }
+
+    public static String of(JsonNode feature) {
+        MessageDigest digest = createDigest();
+        update(digest, feature, 0, false);
+        byte[] hash = digest.digest();
+        char[] chars = new char[hash.length * 2];
+        for (int i = 0; i < hash.length; ++i) {
+            chars[2 * i] = HEX[(hash[i] >> 4) & 0xf];
+            chars[2 * i + 1] = HEX[hash[i] & 0xf];
+        }
+        return new String(chars);
+    }
+
+    private static void update(MessageDigest digest, JsonNode node, int depth, boolean properties) {
+        switch (node.getNodeType()) {
+            case OBJECT:
+                List<String> names = new ArrayList<>(node.size());
+                Iterator<String> iterator = node.fieldNames();
+                iterator.forEachRemaining(names::add);
+                Collections.sort(names);
+                digest.update((byte) '{');
+                for (String name : names) {
+                    if (properties && name.equals(JsonConstants.UPDATED)) {
+                        continue;
+                    }
+                    update(digest, name);
+                    update(digest, node.get(name), depth + 1,
+                           depth == 0 && name.equals(JsonConstants.PROPERTIES));
+                }
+                digest.update((byte) '}');
+                break;
+            case ARRAY:
+                digest.update((byte) '[');
+                for (JsonNode element : node) {
+                    update(digest, element, depth + 1, false);
+                }
+                digest.update((byte) ']');
+                break;
+            case STRING:
+                update(digest, node.textValue());
+                break;
+            case NULL:
+            case MISSING:
+                digest.update((byte) 'n');
+                break;
+            default:
+                // numbers, booleans and binary/POJO nodes
+                digest.update((byte) 'v');
+                update(digest, node.asText());
+                break;
+        }
+    }
+
+    private static void update(MessageDigest digest, String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        digest.update((byte) 's');
+        digest.update(new byte[] { (byte) (bytes.length >>> 24), (byte) (bytes.length >>> 16),
+                                   (byte) (bytes.length >>> 8), (byte) bytes.length });
+        digest.update(bytes);
+    }
+
+    private static MessageDigest createDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,120 @@
+/*
+ * Copyright 2019-2020 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.n52.javaps.catalog;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import org.n52.javaps.transactional.TransactionalAlgorithmRepositoryListener;
+import org.n52.shetland.ogc.wps.ap.ApplicationPackage;
+import org.n52.shetland.ogc.wps.description.ProcessDescription;
+import org.n52.svalbard.encode.exception.EncodingException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Cache for the JSON encodings of process offerings and application packages that is shared by all catalog
+ * listeners. Entries are keyed by process identifier and are only used as long as they were created from the same
+ * (or an equal) source object. Entries of (un)registered application packages are invalidated by the repository
+ * callbacks.
+ * <p>
+ * The cached nodes are shared between all documents that contain them and must not be modified.
+ */
+@Component
+public class EncodingCache implements TransactionalAlgorithmRepositoryListener {
+    private static final Logger LOG = LoggerFactory.getLogger(EncodingCache.class);
+    private final ConcurrentMap<String, Entry> processOfferings = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, Entry> applicationPackages = new ConcurrentHashMap<>();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    public JsonNode getProcessOffering(ProcessDescription description, Encoding<ProcessDescription> encoding)
+            throws EncodingException {
+        return get(processOfferings, description.getId().getValue(), description, encoding);
+    }
+
+    public JsonNode getApplicationPackage(ApplicationPackage applicationPackage,
+                                          Encoding<ApplicationPackage> encoding) throws EncodingException {
+        String id = applicationPackage.getProcessDescription().getProcessDescription().getId().getValue();
+        return get(applicationPackages, id, applicationPackage, encoding);
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    @Override
+    public void onRegister(ApplicationPackage applicationPackage) {
+        invalidate(applicationPackage);
+    }
+
+    @Override
+    public void onUnregister(ApplicationPackage applicationPackage) {
+        invalidate(applicationPackage);
+    }
+
+    private void invalidate(ApplicationPackage applicationPackage) {
+        String id = applicationPackage.getProcessDescription().getProcessDescription().getId().getValue();
+        processOfferings.remove(id);
+        applicationPackages.remove(id);
+    }
+
+    private <T> JsonNode get(ConcurrentMap<String, Entry> cache, String id, T source, Encoding<T> encoding)
+            throws EncodingException {
+        Entry entry = cache.get(id);
+        if (entry != null && entry.isFor(source)) {
+            hits.incrementAndGet();
+            return entry.getNode();
+        }
+        long missCount = misses.incrementAndGet();
+        LOG.debug("Encoding {} (hits: {}, misses: {})", id, hits.get(), missCount);
+        JsonNode node = encoding.encode(source);
+        cache.put(id, new Entry(source, node));
+        return node;
+    }
+
+    @FunctionalInterface
+    public interface Encoding<T> {
+        JsonNode encode(T source) throws EncodingException;
+    }
+
+    private static final class Entry {
+        private final Object source;
+        private final JsonNode node;
+
+        Entry(Object source, JsonNode node) {
+            this.source = Objects.requireNonNull(source);
+            this.node = Objects.requireNonNull(node);
+        }
+
+        boolean isFor(Object other) {
+            return source == other || source.equals(other);
+        }
+
+        JsonNode getNode() {
+            return node;
+        }
+    }
+}
@@ -0,0 +1,241 @@
+/*
+ * Copyright 2019-2020 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.n52.javaps.catalog;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link CatalogLease} for instances that share a volume. The leader holds an exclusive lock on
+ * {@code <name>.lock}; the other members try to acquire it on every heartbeat. Every member touches its own file in
+ * {@code <name>.members} on every heartbeat, so that leaving members can determine if they are the last one. Member
+ * files that were not touched for three heartbeats are considered dead. Leaving members decide if they are the last
+ * one while holding the lock, so that two members leaving at the same time do not both see the other as alive.
+ * <p>
+ * The file system has to support {@link FileChannel#tryLock() file locks} across hosts.
+ */
+public class FileCatalogLease implements CatalogLease {
+    private static final Logger LOG = LoggerFactory.getLogger(FileCatalogLease.class);
+    private static final int MISSED_HEARTBEATS = 3;
+    private static final long LOCK_RETRY_MILLIS = 100;
+    private final Path lockFile;
+    private final Path membersDirectory;
+    private final Path memberFile;
+    private final ScheduledExecutorService scheduler;
+    private final Duration heartbeat;
+    private LeadershipListener listener;
+    private ScheduledFuture<?> task;
+    private FileChannel channel;
+    private FileLock lock;
+    private boolean left;
+
+    public FileCatalogLease(Path directory, String name, ScheduledExecutorService scheduler, Duration heartbeat) {
+        this.lockFile = directory.resolve(name + ".lock");
+        this.membersDirectory = directory.resolve(name + ".members");
+        this.memberFile = membersDirectory.resolve(UUID.randomUUID().toString());
+        this.scheduler = Objects.requireNonNull(scheduler);
+        this.heartbeat = Objects.requireNonNull(heartbeat);
+    }
+
+    @Override
+    public void join(LeadershipListener listener) {
+        synchronized (this) {
+            this.listener = Objects.requireNonNull(listener);
+            this.left = false;
+        }
+        beat();
+        long millis = heartbeat.toMillis();
+        synchronized (this) {
+            this.task = scheduler.scheduleWithFixedDelay(this::beat, millis, millis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    @Override
+    public synchronized boolean isLeader() {
+        return lock != null && lock.isValid();
+    }
+
+    @Override
+    public boolean leave() {
+        synchronized (this) {
+            // a heartbeat that is already running must not recreate the member file after it was deleted
+            left = true;
+            if (task != null) {
+                task.cancel(false);
+            }
+            listener = null;
+        }
+        try {
+            boolean locked = awaitLock();
+            synchronized (this) {
+                Files.deleteIfExists(memberFile);
+                // without the lock, another member is still leader and therefore alive
+                return locked && countLiveMembers() == 0;
+            }
+        } catch (IOException e) {
+            LOG.warn("Error leaving lease {}", lockFile, e);
+            // rather leave a stale record than deleting it while others are still alive
+            return false;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } finally {
+            synchronized (this) {
+                release();
+            }
+        }
+    }
+
+    /**
+     * Waits up to a heartbeat for the lock, which a leader releases when it leaves. The monitor is only held while
+     * trying to acquire the lock, not while waiting.
+     */
+    private boolean awaitLock() throws IOException, InterruptedException {
+        long deadline = System.nanoTime() + heartbeat.toNanos();
+        while (true) {
+            synchronized (this) {
+                if (isLeader() || tryLock()) {
+                    return true;
+                }
+            }
+            if (System.nanoTime() - deadline >= 0) {
+                return false;
+            }
+            Thread.sleep(LOCK_RETRY_MILLIS);
+        }
+    }
+
+    private void beat() {
+        try {
+            touch();
+            LeadershipListener acquired = tryAcquire();
+            if (acquired != null) {
+                LOG.info("Acquired lease {}", lockFile);
+                acquired.onAcquired();
+            }
+        } catch (IOException | RuntimeException e) {
+            LOG.warn("Error renewing lease {}", lockFile, e);
+            LeadershipListener revoked;
+            synchronized (this) {
+                revoked = isLeader() ? listener : null;
+                release();
+            }
+            if (revoked != null) {
+                revoked.onRevoked();
+            }
+        }
+    }
+
+    private synchronized LeadershipListener tryAcquire() throws IOException {
+        if (listener == null || isLeader() || !tryLock()) {
+            return null;
+        }
+        deleteDeadMembers();
+        return listener;
+    }
+
+    private boolean tryLock() throws IOException {
+        if (channel == null) {
+            channel = FileChannel.open(lockFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        }
+        try {
+            lock = channel.tryLock();
+        } catch (OverlappingFileLockException e) {
+            // held by another member in this JVM
+            lock = null;
+        }
+        return lock != null;
+    }
+
+    private void release() {
+        try {
+            if (lock != null) {
+                lock.release();
+            }
+            if (channel != null) {
+                channel.close();
+            }
+        } catch (IOException e) {
+            LOG.warn("Error releasing lease {}", lockFile, e);
+        } finally {
+            lock = null;
+            channel = null;
+        }
+    }
+
+    private synchronized void touch() throws IOException {
+        if (left) {
+            return;
+        }
+        Files.createDirectories(membersDirectory);
+        if (!Files.exists(memberFile)) {
+            Files.createFile(memberFile);
+        }
+        Files.setLastModifiedTime(memberFile, FileTime.from(Instant.now()));
+    }
+
+    private int countLiveMembers() throws IOException {
+        int count = 0;
+        Instant deadline = getDeadline();
+        try (DirectoryStream<Path> members = Files.newDirectoryStream(membersDirectory)) {
+            for (Path member : members) {
+                if (Files.getLastModifiedTime(member).toInstant().isAfter(deadline)) {
+                    count++;
+                }
+            }
+        }
+        return count;
+    }
+
+    private void deleteDeadMembers() throws IOException {
+        Instant deadline = getDeadline();
+        try (DirectoryStream<Path> members = Files.newDirectoryStream(membersDirectory)) {
+            for (Path member : members) {
+                if (!Files.getLastModifiedTime(member).toInstant().isAfter(deadline)) {
+                    LOG.info("Removing dead member {} of lease {}", member.getFileName(), lockFile);
+                    Files.deleteIfExists(member);
+                }
+            }
+        }
+    }
+
+    private Instant getDeadline() {
+        return Instant.now().minus(heartbeat.multipliedBy(MISSED_HEARTBEATS));
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s{lock=%s, leader=%s}", getClass().getSimpleName(), lockFile, isLeader());
+    }
+}
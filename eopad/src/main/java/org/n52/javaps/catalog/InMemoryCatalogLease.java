@@ -0,0 +1,99 @@
+/*
+ * Copyright 2019-2020 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.n52.javaps.catalog;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * {@link CatalogLease} for members in the same JVM. The member that joined first is the leader. A lease with its own
+ * {@link Group} is always the leader.
+ */
+public class InMemoryCatalogLease implements CatalogLease {
+    private final Group group;
+
+    public InMemoryCatalogLease() {
+        this(new Group());
+    }
+
+    public InMemoryCatalogLease(Group group) {
+        this.group = Objects.requireNonNull(group);
+    }
+
+    @Override
+    public void join(LeadershipListener listener) {
+        group.join(this, Objects.requireNonNull(listener));
+    }
+
+    @Override
+    public boolean isLeader() {
+        return group.isLeader(this);
+    }
+
+    @Override
+    public boolean leave() {
+        return group.leave(this);
+    }
+
+    /**
+     * The members of a lease.
+     */
+    public static class Group {
+        private final Map<InMemoryCatalogLease, LeadershipListener> members = new LinkedHashMap<>();
+
+        synchronized boolean isLeader(InMemoryCatalogLease lease) {
+            return !members.isEmpty() && members.keySet().iterator().next() == lease;
+        }
+
+        void join(InMemoryCatalogLease lease, LeadershipListener listener) {
+            boolean leader;
+            synchronized (this) {
+                members.put(lease, listener);
+                leader = isLeader(lease);
+            }
+            if (leader) {
+                listener.onAcquired();
+            }
+        }
+
+        boolean leave(InMemoryCatalogLease lease) {
+            List<LeadershipListener> notify = new ArrayList<>(2);
+            boolean last;
+            synchronized (this) {
+                boolean leader = isLeader(lease);
+                LeadershipListener listener = members.remove(lease);
+                last = members.isEmpty();
+                if (leader && listener != null) {
+                    notify.add(listener);
+                    if (!last) {
+                        notify.add(members.values().iterator().next());
+                    }
+                }
+            }
+            if (!notify.isEmpty()) {
+                notify.get(0).onRevoked();
+                if (notify.size() > 1) {
+                    notify.get(1).onAcquired();
+                }
+            }
+            return last;
+        }
+    }
+}
@@ -44,4 +44,7 @@ public interface JsonConstants {
     String EMAIL = "email";
     String CONTACT_POINT = "contactPoint";
     String RESULT = "result";
+    String FEATURES = "features";
+    String NEXT = "next";
+    String REL = "rel";
 }
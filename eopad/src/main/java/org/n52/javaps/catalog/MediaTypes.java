@@ -23,4 +23,6 @@ public interface MediaTypes {
     String APPLICATION_JSON = "application/json";
     String APPLICATION_GEO_JSON = "application/geo+json";
     MediaType APPLICATION_GEO_JSON_TYPE = MediaType.get(APPLICATION_GEO_JSON);
+    String APPLICATION_X_NDJSON = "application/x-ndjson";
+    MediaType APPLICATION_X_NDJSON_TYPE = MediaType.get(APPLICATION_X_NDJSON);
 }
@@ -0,0 +1,158 @@
+/*
+ * Copyright 2019-2020 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.n52.javaps.catalog;
+
+import org.n52.shetland.ogc.wps.ap.ApplicationPackage;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Coalescing queue for the publications of a single {@link CatalogListener}. Pending application packages and
+ * deletions are deduplicated by identifier, so only the latest version of a package is published, and the service
+ * description is published at most once per window, after the application packages. If the number of pending
+ * application packages and deletions reaches the flush threshold, the queue is flushed immediately.
+ * <p>
+ * The threshold does not bound the queue; as pending changes are deduplicated, it never holds more entries than there
+ * are distinct identifiers.
+ */
+public class PublicationQueue {
+    public static final Duration DEFAULT_WINDOW = Duration.ofSeconds(2);
+    public static final int DEFAULT_FLUSH_THRESHOLD = 128;
+    private static final Logger LOG = LoggerFactory.getLogger(PublicationQueue.class);
+    private final Map<String, ApplicationPackage> applicationPackages = new LinkedHashMap<>();
+    private final Set<String> deletions = new LinkedHashSet<>();
+    private final ScheduledExecutorService scheduler;
+    private final Publisher publisher;
+    private boolean serviceDescription;
+    private ScheduledFuture<?> flush;
+    private CompletableFuture<Void> inFlight = CompletableFuture.completedFuture(null);
+    private volatile Duration window = DEFAULT_WINDOW;
+    private volatile int flushThreshold = DEFAULT_FLUSH_THRESHOLD;
+
+    public PublicationQueue(ScheduledExecutorService scheduler, Publisher publisher) {
+        this.scheduler = Objects.requireNonNull(scheduler);
+        this.publisher = Objects.requireNonNull(publisher);
+    }
+
+    public void setWindow(Duration window) {
+        if (window.isNegative()) {
+            throw new IllegalArgumentException("negative publication window: " + window);
+        }
+        this.window = window;
+    }
+
+    public void setFlushThreshold(int flushThreshold) {
+        if (flushThreshold < 1) {
+            throw new IllegalArgumentException("invalid publication flush threshold: " + flushThreshold);
+        }
+        this.flushThreshold = flushThreshold;
+    }
+
+    public synchronized void addApplicationPackage(String id, ApplicationPackage applicationPackage) {
+        // re-insert to keep the order of the latest changes
+        applicationPackages.remove(id);
+        applicationPackages.put(id, applicationPackage);
+        deletions.remove(id);
+        schedule();
+    }
+
+    public synchronized void deleteApplicationPackage(String id) {
+        applicationPackages.remove(id);
+        deletions.add(id);
+        schedule();
+    }
+
+    public synchronized void addServiceDescription() {
+        serviceDescription = true;
+        schedule();
+    }
+
+    public synchronized void clear() {
+        if (flush != null) {
+            flush.cancel(false);
+            flush = null;
+        }
+        applicationPackages.clear();
+        deletions.clear();
+        serviceDescription = false;
+    }
+
+    private void schedule() {
+        if (applicationPackages.size() + deletions.size() >= flushThreshold) {
+            if (flush != null) {
+                flush.cancel(false);
+            }
+            flush = scheduler.schedule(this::flush, 0, TimeUnit.MILLISECONDS);
+        } else if (flush == null) {
+            flush = scheduler.schedule(this::flush, window.toMillis(), TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Runs the supplied publication after all publications that are currently in flight. Publications of later
+     * windows will wait for its completion.
+     *
+     * @param publication the publication
+     * @return the future of the publication
+     */
+    public synchronized CompletableFuture<Void> submit(Supplier<CompletableFuture<Void>> publication) {
+        CompletableFuture<Void> future = inFlight.thenCompose(v -> publication.get());
+        inFlight = future.exceptionally(t -> {
+            LOG.warn("Error publishing to catalog", Futures.unwrap(t));
+            return null;
+        });
+        return future;
+    }
+
+    private synchronized void flush() {
+        flush = null;
+        if (applicationPackages.isEmpty() && deletions.isEmpty() && !serviceDescription) {
+            return;
+        }
+        List<ApplicationPackage> packages = new ArrayList<>(applicationPackages.values());
+        List<String> deleted = new ArrayList<>(deletions);
+        boolean withServiceDescription = serviceDescription;
+        applicationPackages.clear();
+        deletions.clear();
+        serviceDescription = false;
+        LOG.debug("Publishing {} application package(s), {} deletion(s), service description: {}",
+                  packages.size(), deleted.size(), withServiceDescription);
+        // publications of consecutive windows must not overtake each other
+        submit(() -> publisher.publish(packages, deleted, withServiceDescription));
+    }
+
+    @FunctionalInterface
+    public interface Publisher {
+        CompletableFuture<Void> publish(Collection<ApplicationPackage> applicationPackages,
+                                        Collection<String> deletions, boolean serviceDescription);
+    }
+}
@@ -0,0 +1,157 @@
+/*
+ * Copyright 2019-2020 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.n52.javaps.catalog;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * {@link AsyncCatalogClient} decorator that retries transient failures according to a {@link RetryPolicy} and
+ * rejects requests while the {@link CircuitBreaker} of the catalog is open.
+ */
+public class ResilientCatalogClient implements AsyncCatalogClient {
+    private static final Logger LOG = LoggerFactory.getLogger(ResilientCatalogClient.class);
+    private final AsyncCatalogClient delegate;
+    private final RetryPolicy retryPolicy;
+    private final CircuitBreaker circuitBreaker;
+    private final ScheduledExecutorService scheduler;
+    private final AtomicLong retries = new AtomicLong();
+
+    public ResilientCatalogClient(AsyncCatalogClient delegate, RetryPolicy retryPolicy,
+                                  CircuitBreaker circuitBreaker, ScheduledExecutorService scheduler) {
+        this.delegate = Objects.requireNonNull(delegate);
+        this.retryPolicy = Objects.requireNonNull(retryPolicy);
+        this.circuitBreaker = Objects.requireNonNull(circuitBreaker);
+        this.scheduler = Objects.requireNonNull(scheduler);
+    }
+
+    public CircuitBreaker getCircuitBreaker() {
+        return circuitBreaker;
+    }
+
+    /**
+     * Get the number of retried requests.
+     *
+     * @return the number of retries
+     */
+    public long getRetries() {
+        return retries.get();
+    }
+
+    @Override
+    public CompletableFuture<Void> updateOrInsertAsync(JsonNode node) {
+        return execute(() -> delegate.updateOrInsertAsync(node));
+    }
+
+    @Override
+    public CompletableFuture<Void> deleteAsync(String id) {
+        return execute(() -> delegate.deleteAsync(id));
+    }
+
+    @Override
+    public CompletableFuture<Void> updateAsync(JsonNode content) {
+        return execute(() -> delegate.updateAsync(content));
+    }
+
+    @Override
+    public CompletableFuture<Void> insertAsync(JsonNode content) {
+        return execute(() -> delegate.insertAsync(content));
+    }
+
+    @Override
+    public CompletableFuture<Boolean> existsAsync(String id) {
+        return execute(() -> delegate.existsAsync(id));
+    }
+
+    @Override
+    public CompletableFuture<Set<String>> getIdentifiersAsync() {
+        return execute(delegate::getIdentifiersAsync);
+    }
+
+    /**
+     * Executes a request with the retry policy and circuit breaker of this client. This allows other requests of the
+     * same catalog (e.g. of a {@link CatalogTransport}) to share them.
+     *
+     * @param request the supplier of the request, invoked for every attempt
+     * @param <T>     the result type
+     * @return the future of the result
+     */
+    public <T> CompletableFuture<T> execute(Supplier<CompletableFuture<T>> request) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        attempt(request, 1, result);
+        return result;
+    }
+
+    private <T> void attempt(Supplier<CompletableFuture<T>> request, int attempt, CompletableFuture<T> result) {
+        try {
+            circuitBreaker.acquire();
+        } catch (CircuitBreaker.OpenException e) {
+            result.completeExceptionally(e);
+            return;
+        }
+        CompletableFuture<T> future;
+        try {
+            future = request.get();
+        } catch (RuntimeException e) {
+            // the request could not be created, which says nothing about the catalog
+            circuitBreaker.release();
+            result.completeExceptionally(e);
+            return;
+        }
+        future.whenComplete((value, t) -> {
+            if (t == null) {
+                circuitBreaker.onSuccess();
+                result.complete(value);
+                return;
+            }
+            Throwable cause = Futures.unwrap(t);
+            if (!RetryPolicy.isTransient(cause)) {
+                // the catalog is reachable, the request itself is erroneous
+                circuitBreaker.onSuccess();
+                result.completeExceptionally(cause);
+            } else {
+                circuitBreaker.onFailure();
+                if (retryPolicy.shouldRetry(attempt, cause) && !result.isDone()) {
+                    Duration backoff = retryPolicy.getBackoff(attempt);
+                    LOG.debug("Retrying catalog request in {} (attempt {}): {}", backoff, attempt,
+                              cause.getMessage());
+                    retries.incrementAndGet();
+                    try {
+                        scheduler.schedule(() -> attempt(request, attempt + 1, result),
+                                           backoff.toMillis(), TimeUnit.MILLISECONDS);
+                    } catch (RejectedExecutionException e) {
+                        // shutting down
+                        result.completeExceptionally(cause);
+                    }
+                } else {
+                    result.completeExceptionally(cause);
+                }
+            }
+        });
+    }
+}
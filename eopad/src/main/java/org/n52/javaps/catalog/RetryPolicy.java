@@ -0,0 +1,89 @@
+/*
+ * Copyright 2019-2020 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.n52.javaps.catalog;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Retry policy for catalog requests using exponential backoff with full jitter. Only network errors and responses
+ * that indicate a temporary unavailability of the catalog ({@code 408}, {@code 429} and {@code 5xx}) are retried.
+ */
+public class RetryPolicy {
+    private final int maxAttempts;
+    private final Duration initialBackoff;
+    private final Duration maxBackoff;
+
+    public RetryPolicy(int maxAttempts, Duration initialBackoff, Duration maxBackoff) {
+        if (maxAttempts < 1) {
+            throw new IllegalArgumentException("invalid number of attempts: " + maxAttempts);
+        }
+        if (initialBackoff.isNegative() || maxBackoff.compareTo(initialBackoff) < 0) {
+            throw new IllegalArgumentException(String.format("invalid backoff: %s - %s", initialBackoff, maxBackoff));
+        }
+        this.maxAttempts = maxAttempts;
+        this.initialBackoff = initialBackoff;
+        this.maxBackoff = maxBackoff;
+    }
+
+    public int getMaxAttempts() {
+        return maxAttempts;
+    }
+
+    /**
+     * Checks if the failed attempt should be retried.
+     *
+     * @param attempt the number of the failed attempt, starting with {@code 1}
+     * @param cause   the cause of the failure
+     * @return if the request should be retried
+     */
+    public boolean shouldRetry(int attempt, Throwable cause) {
+        return attempt < maxAttempts && isTransient(cause);
+    }
+
+    /**
+     * Get the delay before the next attempt.
+     *
+     * @param attempt the number of the failed attempt, starting with {@code 1}
+     * @return the delay
+     */
+    public Duration getBackoff(int attempt) {
+        long max = initialBackoff.toMillis() << Math.min(attempt - 1, 30);
+        if (max <= 0 || max > maxBackoff.toMillis()) {
+            max = maxBackoff.toMillis();
+        }
+        return Duration.ofMillis(ThreadLocalRandom.current().nextLong(max + 1));
+    }
+
+    /**
+     * Checks if the cause indicates a temporary unavailability of the catalog.
+     *
+     * @param cause the cause
+     * @return if the cause is transient
+     */
+    public static boolean isTransient(Throwable cause) {
+        if (cause instanceof CircuitBreaker.OpenException) {
+            return false;
+        } else if (cause instanceof CatalogException) {
+            int status = ((CatalogException) cause).getStatus();
+            return status == 408 || status == 429 || status >= 500;
+        } else {
+            return cause instanceof IOException;
+        }
+    }
+}
@@ -0,0 +1,39 @@
+/*
+ * Copyright 2019-2020 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.n52.javaps.catalog;
+
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.n52.shetland.ogc.wps.ap.ApplicationPackage;
+import org.n52.svalbard.encode.exception.EncodingException;
+
+/**
+ * Service description of a single catalog that is updated incrementally on (un)registration of application
+ * packages.
+ */
+public interface ServiceDescription {
+    void register(ApplicationPackage applicationPackage) throws EncodingException;
+
+    void unregister(ApplicationPackage applicationPackage);
+
+    /**
+     * Creates a snapshot of the current service description that can be published while the description is
+     * modified.
+     *
+     * @return the service insertion
+     */
+    ObjectNode toJson();
+}
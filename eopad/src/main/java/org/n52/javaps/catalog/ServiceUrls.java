@@ -0,0 +1,107 @@
+/*
+ * Copyright 2019-2020 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.n52.javaps.catalog;
+
+import okhttp3.HttpUrl;
+import org.n52.janmayen.function.Predicates;
+import org.n52.janmayen.stream.Streams;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+
+import static java.util.stream.Collectors.joining;
+import static java.util.stream.Collectors.toList;
+
+/**
+ * The URLs of the service and its processes. The process and execute URLs are built once per process and shared by
+ * the configurations of all catalogs, until the process is evicted.
+ */
+public class ServiceUrls {
+    private static final String PROCESSES = "processes";
+    private static final String JOBS = "jobs";
+    private final HttpUrl serviceURL;
+    private final HttpUrl processesURL;
+    private final String serviceIdentifier;
+    private final Map<String, ProcessUrls> processUrls = new ConcurrentHashMap<>();
+
+    public ServiceUrls(HttpUrl serviceURL) {
+        this.serviceURL = Objects.requireNonNull(serviceURL);
+        this.processesURL = serviceURL.newBuilder().addPathSegment(PROCESSES).build();
+        this.serviceIdentifier = asIdentifier(serviceURL);
+    }
+
+    public HttpUrl getServiceURL() {
+        return serviceURL;
+    }
+
+    public String getServiceIdentifier() {
+        return serviceIdentifier;
+    }
+
+    public HttpUrl getProcessUrl(String id) {
+        return getProcessUrls(id).getProcessUrl();
+    }
+
+    public HttpUrl getExecuteUrl(String id) {
+        return getProcessUrls(id).getExecuteUrl();
+    }
+
+    /**
+     * Drops the cached URLs of the process with the specified identifier.
+     *
+     * @param id the process identifier
+     */
+    public void evict(String id) {
+        processUrls.remove(id);
+    }
+
+    private ProcessUrls getProcessUrls(String id) {
+        return processUrls.computeIfAbsent(id, key -> {
+            HttpUrl processUrl = processesURL.newBuilder().addPathSegment(key).build();
+            return new ProcessUrls(processUrl, processUrl.newBuilder().addPathSegment(JOBS).build());
+        });
+    }
+
+    private static String asIdentifier(HttpUrl url) {
+        List<String> domain = Streams.stream(url.host().split("\\.")).collect(toList());
+        Collections.reverse(domain);
+        Stream<String> path = Streams.stream(url.encodedPath().split("/")).filter(Predicates.not(String::isEmpty));
+        return Stream.concat(domain.stream(), path).collect(joining("."));
+    }
+
+    private static final class ProcessUrls {
+        private final HttpUrl processUrl;
+        private final HttpUrl executeUrl;
+
+        ProcessUrls(HttpUrl processUrl, HttpUrl executeUrl) {
+            this.processUrl = processUrl;
+            this.executeUrl = executeUrl;
+        }
+
+        HttpUrl getProcessUrl() {
+            return processUrl;
+        }
+
+        HttpUrl getExecuteUrl() {
+            return executeUrl;
+        }
+    }
+}
@@ -0,0 +1,52 @@
+/*
+ * Copyright 2019-2020 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.n52.javaps.catalog;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Collectors;
+
+/**
+ * {@link CatalogTransport} that sends every change separately using the per-record operations of an
+ * {@link AsyncCatalogClient}.
+ */
+public class SingleRecordCatalogTransport implements CatalogTransport {
+    private final AsyncCatalogClient client;
+
+    public SingleRecordCatalogTransport(AsyncCatalogClient client) {
+        this.client = Objects.requireNonNull(client);
+    }
+
+    @Override
+    public List<List<CatalogChange>> partition(List<CatalogChange> changes) {
+        return changes.stream().map(Collections::singletonList).collect(Collectors.toList());
+    }
+
+    @Override
+    public List<CompletableFuture<Void>> send(List<CatalogChange> batch) {
+        List<CompletableFuture<Void>> futures = new ArrayList<>(batch.size());
+        for (CatalogChange change : batch) {
+            futures.add(change.getType() == CatalogChange.Type.DELETE
+                        ? client.deleteAsync(change.getId())
+                        : client.updateOrInsertAsync(change.getContent()));
+        }
+        return futures;
+    }
+}
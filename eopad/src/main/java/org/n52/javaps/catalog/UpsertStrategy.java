@@ -0,0 +1,43 @@
+/*
+ * Copyright 2019-2020 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.n52.javaps.catalog;
+
+/**
+ * How {@link CatalogClient#updateOrInsert(com.fasterxml.jackson.databind.JsonNode)} decides between updating and
+ * inserting a record.
+ */
+public enum UpsertStrategy {
+    /**
+     * Check if the record exists and update or insert it afterwards. Always needs two requests.
+     */
+    EXISTS_CHECK,
+    /**
+     * Update the record and insert it if the catalog responds with {@code 404}. Needs a single request for existing
+     * records, but requires the catalog to reject updates of unknown records.
+     */
+    PUT_FIRST,
+    /**
+     * Remember the identifiers of records that were successfully inserted or updated and update these directly. Falls
+     * back to {@link #EXISTS_CHECK} for unknown records.
+     */
+    CACHED;
+
+    /**
+     * The strategy of catalogs that do not configure one.
+     */
+    public static final UpsertStrategy DEFAULT = CACHED;
+}
@@ -0,0 +1,36 @@
+/*
+ * Copyright 2019-2020 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.n52.javaps.catalog.http;
+
+import java.util.Locale;
+
+/**
+ * The operation of a catalog request, attached as {@link okhttp3.Request#tag(Class) tag} to the request.
+ */
+public enum CatalogOperation {
+    INSERT,
+    UPDATE,
+    DELETE,
+    EXISTS,
+    LIST,
+    BATCH,
+    OTHER;
+
+    public String getTagValue() {
+        return name().toLowerCase(Locale.ROOT);
+    }
+}
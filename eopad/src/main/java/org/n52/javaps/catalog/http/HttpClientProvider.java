@@ -0,0 +1,127 @@
+/*
+ * Copyright 2019-2020 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.n52.javaps.catalog.http;
+
+import okhttp3.ConnectionPool;
+import okhttp3.Dispatcher;
+import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
+import org.n52.faroe.annotation.Configurable;
+import org.n52.faroe.annotation.Setting;
+import org.n52.janmayen.lifecycle.Constructable;
+import org.n52.janmayen.lifecycle.Destroyable;
+import org.n52.javaps.catalog.CatalogSettings;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Provides the application wide {@link OkHttpClient} for catalog requests. Clients for single catalogs should be
+ * derived using {@link OkHttpClient#newBuilder()}, so that all of them share the same connection pool and
+ * dispatcher.
+ * <p>
+ * The request limits are applied to the shared dispatcher when they change. The other settings are only read when
+ * the client is built, so they take effect after a restart.
+ */
+@Component
+@Configurable
+public class HttpClientProvider implements Constructable, Destroyable {
+    private int maxIdleConnections = 5;
+    private Duration keepAlive = Duration.ofMinutes(5);
+    private int maxRequests = 64;
+    private int maxRequestsPerHost = 5;
+    private Duration connectTimeout = Duration.ofSeconds(10);
+    private Duration readTimeout = Duration.ofSeconds(10);
+    private boolean http2 = true;
+    private OkHttpClient client;
+
+    @Setting(CatalogSettings.HTTP_MAX_IDLE_CONNECTIONS)
+    public void setMaxIdleConnections(int maxIdleConnections) {
+        this.maxIdleConnections = maxIdleConnections;
+    }
+
+    @Setting(CatalogSettings.HTTP_KEEP_ALIVE)
+    public void setKeepAlive(String keepAlive) {
+        this.keepAlive = Duration.parse(keepAlive);
+    }
+
+    @Setting(CatalogSettings.HTTP_MAX_REQUESTS)
+    public synchronized void setMaxRequests(int maxRequests) {
+        this.maxRequests = maxRequests;
+        if (client != null) {
+            client.dispatcher().setMaxRequests(maxRequests);
+        }
+    }
+
+    @Setting(CatalogSettings.HTTP_MAX_REQUESTS_PER_HOST)
+    public synchronized void setMaxRequestsPerHost(int maxRequestsPerHost) {
+        this.maxRequestsPerHost = maxRequestsPerHost;
+        if (client != null) {
+            client.dispatcher().setMaxRequestsPerHost(maxRequestsPerHost);
+        }
+    }
+
+    @Setting(CatalogSettings.HTTP_CONNECT_TIMEOUT)
+    public void setConnectTimeout(String connectTimeout) {
+        this.connectTimeout = Duration.parse(connectTimeout);
+    }
+
+    @Setting(CatalogSettings.HTTP_READ_TIMEOUT)
+    public void setReadTimeout(String readTimeout) {
+        this.readTimeout = Duration.parse(readTimeout);
+    }
+
+    @Setting(CatalogSettings.HTTP_HTTP2)
+    public void setHttp2(boolean http2) {
+        this.http2 = http2;
+    }
+
+    @Override
+    public synchronized void init() {
+        Dispatcher dispatcher = new Dispatcher();
+        dispatcher.setMaxRequests(maxRequests);
+        dispatcher.setMaxRequestsPerHost(maxRequestsPerHost);
+        this.client = new OkHttpClient.Builder()
+                              .connectionPool(new ConnectionPool(maxIdleConnections, keepAlive.toMillis(),
+                                                                 TimeUnit.MILLISECONDS))
+                              .dispatcher(dispatcher)
+                              .connectTimeout(connectTimeout.toMillis(), TimeUnit.MILLISECONDS)
+                              .readTimeout(readTimeout.toMillis(), TimeUnit.MILLISECONDS)
+                              .protocols(http2
+                                         ? Arrays.asList(Protocol.HTTP_2, Protocol.HTTP_1_1)
+                                         : Collections.singletonList(Protocol.HTTP_1_1))
+                              .build();
+    }
+
+    public synchronized OkHttpClient get() {
+        if (client == null) {
+            init();
+        }
+        return client;
+    }
+
+    @Override
+    public synchronized void destroy() {
+        if (client != null) {
+            client.dispatcher().executorService().shutdown();
+            client.connectionPool().evictAll();
+        }
+    }
+}
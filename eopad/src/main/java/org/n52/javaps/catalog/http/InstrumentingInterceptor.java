@@ -0,0 +1,240 @@
+/*
+ * Copyright 2019-2020 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.n52.javaps.catalog.http;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import okhttp3.Interceptor;
+import okhttp3.MediaType;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import okio.Buffer;
+import okio.BufferedSink;
+import okio.BufferedSource;
+import okio.ForwardingSink;
+import okio.ForwardingSource;
+import okio.Okio;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Interceptor that logs and instruments catalog requests. All meters are tagged with the {@code host} of the catalog
+ * and the {@link CatalogOperation operation} of the request:
+ * <ul>
+ * <li>{@code catalog.requests}: timer of the requests, additionally tagged with the {@code status} of the
+ * response,</li>
+ * <li>{@code catalog.responses}: counter of the responses by {@code status},</li>
+ * <li>{@code catalog.request.size} and {@code catalog.response.size}: the number of transferred body bytes,</li>
+ * <li>{@code catalog.requests.active}: the number of requests in flight.</li>
+ * </ul>
+ * The meters of a host are kept until they are {@linkplain #release(String) released}.
+ */
+public class InstrumentingInterceptor implements Interceptor {
+    private static final Logger LOG = LoggerFactory.getLogger("okhttp3");
+    private static final String REQUESTS = "catalog.requests";
+    private static final String RESPONSES = "catalog.responses";
+    private static final String REQUEST_SIZE = "catalog.request.size";
+    private static final String RESPONSE_SIZE = "catalog.response.size";
+    private static final String ACTIVE_REQUESTS = "catalog.requests.active";
+    private static final String HOST = "host";
+    private static final String OPERATION = "operation";
+    private static final String STATUS = "status";
+    private static final String IO_ERROR = "IO_ERROR";
+    private final MeterRegistry registry;
+    private final ConcurrentMap<Tags, AtomicInteger> active = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, Set<Meter>> meters = new ConcurrentHashMap<>();
+
+    public InstrumentingInterceptor(MeterRegistry registry) {
+        this.registry = Objects.requireNonNull(registry);
+    }
+
+    @Override
+    public Response intercept(Chain chain) throws IOException {
+        Request request = chain.request();
+        CatalogOperation operation = Optional.ofNullable(request.tag(CatalogOperation.class))
+                                             .orElse(CatalogOperation.OTHER);
+        String host = request.url().host();
+        Tags tags = Tags.of(HOST, host, OPERATION, operation.getTagValue());
+        Request instrumented = request;
+        RequestBody body = request.body();
+        if (body != null) {
+            instrumented = request.newBuilder().method(request.method(), new CountingRequestBody(body, host, tags))
+                                 .build();
+        }
+        AtomicInteger inFlight = active.computeIfAbsent(tags, t -> {
+            AtomicInteger value = new AtomicInteger();
+            track(host, Gauge.builder(ACTIVE_REQUESTS, value, AtomicInteger::get).tags(t).register(registry));
+            return value;
+        });
+        inFlight.incrementAndGet();
+        long start = System.nanoTime();
+        String status = IO_ERROR;
+        try {
+            Response response = chain.proceed(instrumented);
+            status = Integer.toString(response.code());
+            LOG.info("{} {} {} ({} ms)", request.method(), request.url(), response.code(),
+                     TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+            ResponseBody responseBody = response.body();
+            if (responseBody == null) {
+                return response;
+            }
+            return response.newBuilder().body(new CountingResponseBody(responseBody, host, tags)).build();
+        } finally {
+            inFlight.decrementAndGet();
+            Tags statusTags = tags.and(STATUS, status);
+            track(host, Timer.builder(REQUESTS)
+                             .tags(statusTags)
+                             .publishPercentileHistogram()
+                             .register(registry))
+                    .record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            track(host, Counter.builder(RESPONSES).tags(statusTags).register(registry)).increment();
+        }
+    }
+
+    /**
+     * Removes the meters of the specified host from the registry, e.g. after the last catalog on it was removed.
+     *
+     * @param host the host
+     */
+    public void release(String host) {
+        active.keySet().removeIf(tags -> tags.stream().anyMatch(tag -> HOST.equals(tag.getKey())
+                                                                       && host.equals(tag.getValue())));
+        Set<Meter> released = meters.remove(host);
+        if (released != null) {
+            released.forEach(registry::remove);
+        }
+    }
+
+    private <T extends Meter> T track(String host, T meter) {
+        meters.computeIfAbsent(host, h -> ConcurrentHashMap.newKeySet()).add(meter);
+        return meter;
+    }
+
+    private void recordSize(String name, String host, Tags tags, long bytes) {
+        track(host, DistributionSummary.builder(name).baseUnit("bytes").tags(tags).register(registry)).record(bytes);
+    }
+
+    private class CountingRequestBody extends RequestBody {
+        private final RequestBody delegate;
+        private final String host;
+        private final Tags tags;
+
+        CountingRequestBody(RequestBody delegate, String host, Tags tags) {
+            this.delegate = delegate;
+            this.host = host;
+            this.tags = tags;
+        }
+
+        @Override
+        public MediaType contentType() {
+            return delegate.contentType();
+        }
+
+        @Override
+        public long contentLength() throws IOException {
+            return delegate.contentLength();
+        }
+
+        @Override
+        public boolean isOneShot() {
+            return delegate.isOneShot();
+        }
+
+        @Override
+        public void writeTo(BufferedSink sink) throws IOException {
+            long[] count = new long[1];
+            BufferedSink counting = Okio.buffer(new ForwardingSink(sink) {
+                @Override
+                public void write(Buffer source, long byteCount) throws IOException {
+                    super.write(source, byteCount);
+                    count[0] += byteCount;
+                }
+            });
+            delegate.writeTo(counting);
+            counting.emit();
+            recordSize(REQUEST_SIZE, host, tags, count[0]);
+        }
+    }
+
+    private class CountingResponseBody extends ResponseBody {
+        private final ResponseBody delegate;
+        private final BufferedSource source;
+
+        CountingResponseBody(ResponseBody delegate, String host, Tags tags) {
+            this.delegate = delegate;
+            this.source = Okio.buffer(new ForwardingSource(delegate.source()) {
+                private long count;
+                private boolean recorded;
+
+                @Override
+                public long read(Buffer sink, long byteCount) throws IOException {
+                    long read = super.read(sink, byteCount);
+                    if (read < 0) {
+                        record();
+                    } else {
+                        count += read;
+                    }
+                    return read;
+                }
+
+                @Override
+                public void close() throws IOException {
+                    record();
+                    super.close();
+                }
+
+                private void record() {
+                    if (!recorded) {
+                        recorded = true;
+                        recordSize(RESPONSE_SIZE, host, tags, count);
+                    }
+                }
+            });
+        }
+
+        @Override
+        public MediaType contentType() {
+            return delegate.contentType();
+        }
+
+        @Override
+        public long contentLength() {
+            return delegate.contentLength();
+        }
+
+        @Override
+        public BufferedSource source() {
+            return source;
+        }
+    }
+}
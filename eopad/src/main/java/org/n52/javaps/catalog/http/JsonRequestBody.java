@@ -0,0 +1,122 @@
+/*
+ * Copyright 2019-2020 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.n52.javaps.catalog.http;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import okhttp3.MediaType;
+import okhttp3.RequestBody;
+import okio.BufferedSink;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Objects;
+
+/**
+ * {@link RequestBody} that serializes a JSON tree directly into the request sink instead of creating an intermediate
+ * {@code String}. The body is written again for every attempt (e.g. after an authentication challenge), so the tree
+ * must not be modified after the request was created.
+ */
+public class JsonRequestBody extends RequestBody {
+    private static final ObjectMapper MAPPER = new ObjectMapper().disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+    private final JsonNode content;
+    private final MediaType contentType;
+
+    public JsonRequestBody(JsonNode content, MediaType contentType) {
+        this.content = Objects.requireNonNull(content);
+        this.contentType = Objects.requireNonNull(contentType);
+    }
+
+    @Override
+    public MediaType contentType() {
+        return contentType;
+    }
+
+    @Override
+    public long contentLength() {
+        // unknown without serializing the tree twice
+        return -1L;
+    }
+
+    @Override
+    public void writeTo(BufferedSink sink) throws IOException {
+        MAPPER.writeValue(sink.outputStream(), content);
+    }
+
+    /**
+     * Creates a string representation for logging purposes. The serialization is aborted once the maximum length is
+     * reached, so large trees are not serialized completely.
+     *
+     * @param maxLength the maximum number of characters
+     * @return the (possibly truncated) JSON
+     */
+    public String toString(int maxLength) {
+        StringBuilder builder = new StringBuilder();
+        try {
+            MAPPER.writeValue(new LimitedWriter(builder, maxLength), content);
+            return builder.toString();
+        } catch (LimitReachedException e) {
+            return builder.append("... (truncated)").toString();
+        } catch (IOException e) {
+            return builder.append("... (").append(e.getMessage()).append(')').toString();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s{contentType=%s}", getClass().getSimpleName(), contentType);
+    }
+
+    /**
+     * Appends to a {@link StringBuilder} until the limit is reached and aborts the serialization afterwards.
+     */
+    private static final class LimitedWriter extends Writer {
+        private final StringBuilder builder;
+        private final int limit;
+
+        LimitedWriter(StringBuilder builder, int limit) {
+            this.builder = builder;
+            this.limit = limit;
+        }
+
+        @Override
+        public void write(char[] buffer, int offset, int length) throws IOException {
+            int remaining = limit - builder.length();
+            builder.append(buffer, offset, Math.min(length, remaining));
+            if (length > remaining) {
+                throw new LimitReachedException();
+            }
+        }
+
+        @Override
+        public void flush() {
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    private static final class LimitReachedException extends IOException {
+        private static final long serialVersionUID = 1L;
+
+        LimitReachedException() {
+            super(null, null);
+        }
+    }
+}
@@ -0,0 +1,67 @@
+/*
+ * Copyright 2019-2020 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.n52.javaps.catalog.http;
+
+import okhttp3.Call;
+import okhttp3.Callback;
+import okhttp3.Response;
+
+import java.io.IOException;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * {@link CompletableFuture} that is completed by an enqueued {@link Call}. The response is always closed after it
+ * was passed to the {@link ResponseHandler}; cancelling the future cancels the call.
+ *
+ * @param <T> the result type
+ */
+public final class ResponseFuture<T> extends CompletableFuture<T> implements Callback {
+    private final Call call;
+    private final ResponseHandler<T> handler;
+
+    private ResponseFuture(Call call, ResponseHandler<T> handler) {
+        this.call = Objects.requireNonNull(call);
+        this.handler = Objects.requireNonNull(handler);
+    }
+
+    @Override
+    public void onFailure(Call call, IOException e) {
+        completeExceptionally(e);
+    }
+
+    @Override
+    public void onResponse(Call call, Response response) {
+        try (Response r = response) {
+            complete(handler.handle(r));
+        } catch (IOException | RuntimeException e) {
+            completeExceptionally(e);
+        }
+    }
+
+    @Override
+    public boolean cancel(boolean mayInterruptIfRunning) {
+        call.cancel();
+        return super.cancel(mayInterruptIfRunning);
+    }
+
+    public static <T> CompletableFuture<T> enqueue(Call call, ResponseHandler<T> handler) {
+        ResponseFuture<T> future = new ResponseFuture<>(call, handler);
+        call.enqueue(future);
+        return future;
+    }
+}
@@ -16,22 +16,11 @@
  */
 package org.n52.javaps.catalog.http;
 
-import okhttp3.Interceptor;
-import okhttp3.Request;
 import okhttp3.Response;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
 
-public class LoggingInterceptor implements Interceptor {
-    private static final Logger LOG = LoggerFactory.getLogger("okhttp3");
-
-    @Override
-    public Response intercept(Chain chain) throws IOException {
-        Request request = chain.request();
-        Response response = chain.proceed(request);
-        LOG.info("{} {} {}", request.method(), request.url(), response.code());
-        return response;
-    }
+@FunctionalInterface
+public interface ResponseHandler<T> {
+    T handle(Response response) throws IOException;
 }
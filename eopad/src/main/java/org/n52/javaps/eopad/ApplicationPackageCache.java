@@ -0,0 +1,286 @@
+/*
+ * Copyright 2019-2020 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.n52.javaps.eopad;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import okhttp3.Call;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import org.n52.javaps.catalog.Futures;
+import org.n52.javaps.catalog.http.HttpClientProvider;
+import org.n52.javaps.catalog.http.ResponseFuture;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.Properties;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Disk cache for the application packages that are registered on startup. Copies that are younger than the TTL are
+ * used without a request, older ones are revalidated using their {@code ETag} or {@code Last-Modified} date. All
+ * packages are fetched in parallel; if a package can not be fetched in time, the cached copy is used regardless of its
+ * age. In offline mode only cached copies are used.
+ */
+@Component
+public class ApplicationPackageCache {
+    private static final Logger LOG = LoggerFactory.getLogger(ApplicationPackageCache.class);
+    private static final String ETAG = "ETag";
+    private static final String LAST_MODIFIED = "Last-Modified";
+    private static final String IF_NONE_MATCH = "If-None-Match";
+    private static final String IF_MODIFIED_SINCE = "If-Modified-Since";
+    private static final int NOT_MODIFIED = 304;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private HttpClientProvider httpClientProvider;
+    private Path directory;
+    private Duration ttl = Duration.ofDays(1);
+    private Duration timeout = Duration.ofSeconds(30);
+    private boolean offline;
+
+    @Autowired
+    public void setHttpClientProvider(HttpClientProvider httpClientProvider) {
+        this.httpClientProvider = Objects.requireNonNull(httpClientProvider);
+    }
+
+    @Autowired
+    public void setDirectory(@Value("${eopad.processes.cache:${JAVAPS_CONFIG:${java.io.tmpdir}}/application-packages}")
+                                     String directory) {
+        this.directory = Paths.get(directory);
+    }
+
+    @Autowired
+    public void setTtl(@Value("${eopad.processes.ttl:P1D}") String ttl) {
+        this.ttl = Duration.parse(ttl);
+    }
+
+    @Autowired
+    public void setTimeout(@Value("${eopad.processes.timeout:PT30S}") String timeout) {
+        this.timeout = Duration.parse(timeout);
+    }
+
+    @Autowired
+    public void setOffline(@Value("${eopad.processes.offline:false}") boolean offline) {
+        this.offline = offline;
+    }
+
+    /**
+     * Resolves the application packages to their local copies, fetching missing and expired ones in parallel.
+     *
+     * @param urls the URLs of the application packages
+     * @return the {@code file:} URIs of the local copies, in the same order; packages that are neither cached nor
+     *         reachable are omitted
+     */
+    public List<String> resolve(List<String> urls) {
+        OkHttpClient client = httpClientProvider.get().newBuilder()
+                                                .callTimeout(timeout.toMillis(), TimeUnit.MILLISECONDS)
+                                                .build();
+        List<CachedPackage> packages = new ArrayList<>(urls.size());
+        List<CompletableFuture<Path>> futures = new ArrayList<>(urls.size());
+        // the futures derived from the responses do not cancel the calls
+        List<Call> calls = new ArrayList<>(urls.size());
+        for (String url : urls) {
+            CachedPackage cached = new CachedPackage(url);
+            packages.add(cached);
+            futures.add(resolve(client, cached, calls));
+        }
+        long deadline = System.nanoTime() + timeout.toNanos();
+        List<String> resources = new ArrayList<>(urls.size());
+        for (int i = 0; i < packages.size(); ++i) {
+            CachedPackage cached = packages.get(i);
+            Path path;
+            try {
+                path = futures.get(i).get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                path = fallback(cached, e);
+            } catch (ExecutionException | TimeoutException e) {
+                Call call = calls.get(i);
+                if (call != null) {
+                    call.cancel();
+                }
+                path = fallback(cached, Futures.unwrap(e));
+            }
+            if (path != null) {
+                resources.add(path.toUri().toString());
+            }
+        }
+        return resources;
+    }
+
+    private CompletableFuture<Path> resolve(OkHttpClient client, CachedPackage cached, List<Call> calls) {
+        if (cached.exists() && (offline || !cached.isExpired(ttl))) {
+            calls.add(null);
+            return CompletableFuture.completedFuture(cached.getContent());
+        }
+        if (offline) {
+            LOG.warn("{} is not cached, skipping it in offline mode", cached.getURL());
+            calls.add(null);
+            return CompletableFuture.completedFuture(null);
+        }
+        Request.Builder request = new Request.Builder().get().url(cached.getURL());
+        if (cached.exists() && cached.getETag() != null) {
+            request.addHeader(IF_NONE_MATCH, cached.getETag());
+        } else if (cached.exists() && cached.getLastModified() != null) {
+            request.addHeader(IF_MODIFIED_SINCE, cached.getLastModified());
+        }
+        Call call = client.newCall(request.build());
+        calls.add(call);
+        return ResponseFuture.enqueue(call, response -> store(response, cached))
+                             .exceptionally(t -> fallback(cached, Futures.unwrap(t)));
+    }
+
+    private Path store(Response response, CachedPackage cached) throws IOException {
+        if (response.code() == NOT_MODIFIED && cached.exists()) {
+            LOG.debug("{} was not modified", cached.getURL());
+            cached.revalidated();
+            return cached.getContent();
+        }
+        ResponseBody body = response.body();
+        if (!response.isSuccessful() || body == null) {
+            throw new IOException(String.format("%s responded with %d", cached.getURL(), response.code()));
+        }
+        byte[] content = body.bytes();
+        // do not replace a working copy with e.g. an error page
+        objectMapper.readTree(content);
+        cached.store(content, response.header(ETAG), response.header(LAST_MODIFIED));
+        LOG.info("Fetched {}", cached.getURL());
+        return cached.getContent();
+    }
+
+    private Path fallback(CachedPackage cached, Throwable cause) {
+        if (cached.exists()) {
+            LOG.warn("Could not fetch {}, using the copy from {}: {}", cached.getURL(), cached.getFetched(),
+                     cause.toString());
+            return cached.getContent();
+        }
+        LOG.error("Could not fetch {} and it is not cached, skipping it", cached.getURL(), cause);
+        return null;
+    }
+
+    /**
+     * The local copy of an application package and its metadata.
+     */
+    private final class CachedPackage {
+        private static final String URL = "url";
+        private static final String FETCHED = "fetched";
+        private final String url;
+        private final Path content;
+        private final Path metadata;
+        private final Properties properties = new Properties();
+
+        CachedPackage(String url) {
+            this.url = url;
+            String name = url.replaceFirst("^[a-z]+://", "").replaceAll("[^A-Za-z0-9.-]+", "_");
+            this.content = directory.resolve(name);
+            this.metadata = directory.resolve(name + ".properties");
+            load();
+        }
+
+        String getURL() {
+            return url;
+        }
+
+        Path getContent() {
+            return content;
+        }
+
+        synchronized boolean exists() {
+            return properties.getProperty(FETCHED) != null && Files.isRegularFile(content);
+        }
+
+        synchronized Instant getFetched() {
+            return Instant.ofEpochMilli(Long.parseLong(properties.getProperty(FETCHED, "0")));
+        }
+
+        synchronized boolean isExpired(Duration ttl) {
+            return getFetched().plus(ttl).isBefore(Instant.now());
+        }
+
+        synchronized String getETag() {
+            return properties.getProperty(ETAG);
+        }
+
+        synchronized String getLastModified() {
+            return properties.getProperty(LAST_MODIFIED);
+        }
+
+        synchronized void revalidated() throws IOException {
+            properties.setProperty(FETCHED, String.valueOf(System.currentTimeMillis()));
+            save();
+        }
+
+        synchronized void store(byte[] bytes, String etag, String lastModified) throws IOException {
+            Files.createDirectories(directory);
+            Path tmp = content.resolveSibling(content.getFileName() + ".tmp");
+            Files.write(tmp, bytes);
+            Files.move(tmp, content, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            properties.clear();
+            properties.setProperty(URL, url);
+            if (etag != null) {
+                properties.setProperty(ETAG, etag);
+            }
+            if (lastModified != null) {
+                properties.setProperty(LAST_MODIFIED, lastModified);
+            }
+            properties.setProperty(FETCHED, String.valueOf(System.currentTimeMillis()));
+            save();
+        }
+
+        private void load() {
+            try (InputStream in = Files.newInputStream(metadata)) {
+                properties.load(in);
+            } catch (NoSuchFileException e) {
+                return;
+            } catch (IOException | IllegalArgumentException e) {
+                LOG.warn("Error reading {}", metadata, e);
+                properties.clear();
+            }
+            if (!url.equals(properties.getProperty(URL))) {
+                // a different URL that maps to the same name
+                properties.clear();
+            }
+        }
+
+        private void save() throws IOException {
+            Path tmp = metadata.resolveSibling(metadata.getFileName() + ".tmp");
+            try (OutputStream out = Files.newOutputStream(tmp)) {
+                properties.store(out, null);
+            }
+            Files.move(tmp, metadata, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+    }
+}
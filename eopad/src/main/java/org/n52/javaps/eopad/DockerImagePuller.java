@@ -0,0 +1,268 @@
+/*
+ * Copyright 2019-2020 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.n52.javaps.eopad;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import okhttp3.Dispatcher;
+import okhttp3.HttpUrl;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import okio.BufferedSource;
+import org.n52.faroe.ConfigurationError;
+import org.n52.janmayen.lifecycle.Constructable;
+import org.n52.janmayen.lifecycle.Destroyable;
+import org.n52.javaps.catalog.ApplicationPackageRegistry;
+import org.n52.javaps.catalog.Futures;
+import org.n52.javaps.catalog.http.ResponseFuture;
+import org.n52.javaps.transactional.TransactionalAlgorithmRepositoryListener;
+import org.n52.shetland.ogc.wps.ap.ApplicationPackage;
+import org.n52.shetland.ogc.wps.ap.DockerExecutionUnit;
+import org.newsclub.net.unix.AFUNIXSocketFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.io.File;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Pulls the Docker images of application packages as soon as they are registered (and on startup), so that the first
+ * execution does not have to wait for the pull. Pulls of the same image are coalesced and at most
+ * {@code docker.prepull.parallelism} images are pulled at the same time.
+ * <p>
+ * The pre-pulls have to be enabled with {@code docker.prepull.enabled}. The images are pulled using the Docker Engine
+ * API of the {@code unix://} socket of {@code DOCKER_HOST}; if the socket does not exist, nothing is pulled. TCP hosts
+ * are not supported, as the API would be unauthenticated and unencrypted. Executions that start while an image is
+ * pulled wait for the same pull in the Docker daemon, which shares the downloads of concurrent pulls.
+ */
+@Component
+@ConditionalOnProperty(value = "docker.prepull.enabled", havingValue = "true")
+public class DockerImagePuller implements TransactionalAlgorithmRepositoryListener, Constructable, Destroyable {
+    private static final Logger LOG = LoggerFactory.getLogger(DockerImagePuller.class);
+    private static final String UNIX_SCHEME = "unix://";
+    private static final String DEFAULT_TAG = ":latest";
+    private static final String DOWNLOADING = "Downloading";
+    private static final String STATUS = "status";
+    private static final String ERROR = "error";
+    private static final String ID = "id";
+    private static final String PROGRESS_DETAIL = "progressDetail";
+    private static final String CURRENT = "current";
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final Map<String, CompletableFuture<Void>> pulls = new ConcurrentHashMap<>();
+    private ApplicationPackageRegistry applicationPackageRegistry;
+    private MeterRegistry meterRegistry;
+    private String dockerHost;
+    private int parallelism = 2;
+    private Duration timeout = Duration.ofMinutes(30);
+    private OkHttpClient client;
+    private HttpUrl url;
+    private Counter downloaded;
+
+    @Autowired
+    public void setApplicationPackageRegistry(ApplicationPackageRegistry applicationPackageRegistry) {
+        this.applicationPackageRegistry = Objects.requireNonNull(applicationPackageRegistry);
+    }
+
+    @Autowired
+    public void setMeterRegistry(MeterRegistry meterRegistry) {
+        this.meterRegistry = Objects.requireNonNull(meterRegistry);
+    }
+
+    @Autowired
+    public void setDockerHost(@Value("${docker.host:${DOCKER_HOST:unix:///var/run/docker.sock}}") String dockerHost) {
+        this.dockerHost = Objects.requireNonNull(dockerHost);
+    }
+
+    @Autowired
+    public void setParallelism(@Value("${docker.prepull.parallelism:2}") int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("invalid pull parallelism: " + parallelism);
+        }
+        this.parallelism = parallelism;
+    }
+
+    @Autowired
+    public void setTimeout(@Value("${docker.prepull.timeout:PT30M}") String timeout) {
+        this.timeout = Duration.parse(timeout);
+    }
+
+    @Override
+    public void init() {
+        if (!dockerHost.startsWith(UNIX_SCHEME)) {
+            throw new ConfigurationError("unsupported Docker host %s, only unix:// sockets are supported", dockerHost);
+        }
+        File socket = new File(dockerHost.substring(UNIX_SCHEME.length()));
+        if (!socket.exists()) {
+            LOG.info("Docker socket {} does not exist, not pulling images", socket);
+            return;
+        }
+        // the dispatcher limits the number of concurrent pulls, further pulls are queued
+        Dispatcher dispatcher = new Dispatcher();
+        dispatcher.setMaxRequests(parallelism);
+        dispatcher.setMaxRequestsPerHost(parallelism);
+        this.client = new OkHttpClient.Builder()
+                              .socketFactory(new AFUNIXSocketFactory.FactoryArg(socket))
+                              .dispatcher(dispatcher)
+                              .readTimeout(5, TimeUnit.MINUTES)
+                              .callTimeout(timeout.toMillis(), TimeUnit.MILLISECONDS)
+                              .build();
+        // the host is ignored by the socket factory
+        this.url = HttpUrl.get("http://localhost/");
+        this.downloaded = Counter.builder("docker.image.pull.downloaded")
+                                 .description("bytes downloaded by image pre-pulls")
+                                 .baseUnit("bytes")
+                                 .register(meterRegistry);
+        Gauge.builder("docker.image.pulls.running", dispatcher, Dispatcher::runningCallsCount)
+             .register(meterRegistry);
+        Gauge.builder("docker.image.pulls.queued", dispatcher, Dispatcher::queuedCallsCount)
+             .register(meterRegistry);
+        applicationPackageRegistry.getSnapshot().forEach(this::prePull);
+    }
+
+    @Override
+    public void destroy() {
+        if (client != null) {
+            client.dispatcher().cancelAll();
+            client.dispatcher().executorService().shutdown();
+            client.connectionPool().evictAll();
+        }
+    }
+
+    @Override
+    public void onRegister(ApplicationPackage applicationPackage) {
+        prePull(applicationPackage);
+    }
+
+    @Override
+    public void onUnregister(ApplicationPackage applicationPackage) {
+        // images may be shared with other packages and are left to the Docker daemon
+    }
+
+    /**
+     * Pulls the image, joining the pull that is already in flight for it.
+     *
+     * @param image the image reference
+     * @return the future of the pull
+     */
+    public CompletableFuture<Void> pull(String image) {
+        if (client == null) {
+            CompletableFuture<Void> failed = new CompletableFuture<>();
+            failed.completeExceptionally(new IOException("Docker socket " + dockerHost + " is not available"));
+            return failed;
+        }
+        String reference = withTag(image);
+        CompletableFuture<Void> future = new CompletableFuture<>();
+        CompletableFuture<Void> inFlight = pulls.putIfAbsent(reference, future);
+        if (inFlight != null) {
+            return inFlight;
+        }
+        LOG.info("Pulling {}", reference);
+        Timer.Sample sample = Timer.start(meterRegistry);
+        HttpUrl pullUrl = url.newBuilder().addPathSegment("images").addPathSegment("create")
+                             .addQueryParameter("fromImage", reference).build();
+        Request request = new Request.Builder().post(RequestBody.create(new byte[0], null)).url(pullUrl).build();
+        ResponseFuture.enqueue(client.newCall(request), this::readProgress).whenComplete((v, t) -> {
+            pulls.remove(reference, future);
+            sample.stop(Timer.builder("docker.image.pull")
+                             .tag("image", reference)
+                             .tag("outcome", t == null ? "success" : "failure")
+                             .register(meterRegistry));
+            if (t == null) {
+                LOG.info("Pulled {}", reference);
+                future.complete(null);
+            } else {
+                LOG.warn("Error pulling {}", reference, Futures.unwrap(t));
+                future.completeExceptionally(Futures.unwrap(t));
+            }
+        });
+        return future;
+    }
+
+    private void prePull(ApplicationPackage applicationPackage) {
+        if (client == null) {
+            return;
+        }
+        applicationPackage.getExecutionUnits().stream()
+                          .filter(DockerExecutionUnit.class::isInstance)
+                          .map(DockerExecutionUnit.class::cast)
+                          .map(DockerExecutionUnit::getImage)
+                          .filter(Objects::nonNull)
+                          .forEach(this::pull);
+    }
+
+    /**
+     * Reads the progress messages of the pull until the pull completed. Failures are reported in the stream, even if
+     * the status of the response was successful.
+     */
+    private Void readProgress(Response response) throws IOException {
+        ResponseBody body = response.body();
+        if (!response.isSuccessful() || body == null) {
+            throw new IOException(String.format("Docker responded with %d: %s", response.code(),
+                                                body == null ? null : body.string()));
+        }
+        Map<String, Long> layers = new HashMap<>();
+        BufferedSource source = body.source();
+        String line;
+        while ((line = source.readUtf8Line()) != null) {
+            if (line.isEmpty()) {
+                continue;
+            }
+            JsonNode progress = objectMapper.readTree(line);
+            if (progress.hasNonNull(ERROR)) {
+                throw new IOException(progress.path(ERROR).asText());
+            }
+            JsonNode current = progress.path(PROGRESS_DETAIL).path(CURRENT);
+            if (DOWNLOADING.equals(progress.path(STATUS).textValue()) && current.canConvertToLong()) {
+                long previous = layers.getOrDefault(progress.path(ID).asText(), 0L);
+                if (current.asLong() > previous) {
+                    downloaded.increment(current.asLong() - previous);
+                    layers.put(progress.path(ID).asText(), current.asLong());
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Adds the default tag to untagged references; the Docker Engine API would pull all tags otherwise.
+     */
+    private static String withTag(String image) {
+        int name = image.lastIndexOf('/');
+        if (image.indexOf('@') >= 0 || image.indexOf(':', name + 1) >= 0) {
+            return image;
+        }
+        return image + DEFAULT_TAG;
+    }
+}
@@ -18,9 +18,13 @@ package org.n52.javaps.eopad;
 
 import org.n52.javaps.transactional.TransactionalAlgorithmConfiguration;
 import org.n52.javaps.transactional.TransactionalAlgorithmConfigurer;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.context.annotation.Configuration;
 
+import java.util.Arrays;
+import java.util.Objects;
+
 @Configuration
 @ConditionalOnProperty(value = "eopad.processes.enabled", matchIfMissing = true)
 public class InitialAlgorithmConfiguration implements TransactionalAlgorithmConfigurer {
@@ -29,9 +33,16 @@ public class InitialAlgorithmConfiguration implements TransactionalAlgorithmConf
             = "https://raw.githubusercontent.com/52North/eopad-docker/master/ndvi/application-package.json";
     private static final String QUALITY
             = "https://raw.githubusercontent.com/52North/eopad-docker/master/quality/application-package.json";
+    private ApplicationPackageCache applicationPackageCache;
+
+    @Autowired
+    public void setApplicationPackageCache(ApplicationPackageCache applicationPackageCache) {
+        this.applicationPackageCache = Objects.requireNonNull(applicationPackageCache);
+    }
 
     @Override
     public void configure(TransactionalAlgorithmConfiguration configuration) {
-        configuration.addAlgorithmFromResource(NDVI).addAlgorithmFromResource(QUALITY);
+        applicationPackageCache.resolve(Arrays.asList(NDVI, QUALITY))
+                               .forEach(configuration::addAlgorithmFromResource);
     }
 }
@@ -16,35 +16,34 @@
  */
 package org.n52.javaps.eopad;
 
-import org.n52.javaps.catalog.CatalogListener;
-import org.n52.javaps.catalog.CatalogListenerFactory;
-import org.springframework.beans.factory.annotation.Autowired;
+import org.n52.javaps.catalog.CatalogEndpoint;
+import org.n52.javaps.catalog.CatalogRegistry;
+import org.n52.javaps.catalog.UpsertStrategy;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
+/**
+ * The default catalogs of the {@link CatalogRegistry}, used if no registry file is configured. An empty upsert
+ * strategy selects the {@link UpsertStrategy#DEFAULT default}.
+ */
 @Configuration
 public class ListenerConfiguration {
     private static final String DEIMOS_URL = "http://servicecatalogue-ogctestbed15.deimos.pt/smi/";
     private static final String GMU_URL = "https://cloud.csiss.gmu.edu/ows15/geonet/rest3a/ogc/cat3a/";
-    private CatalogListenerFactory catalogListenerFactory;
-
-    @Autowired
-    public void setCatalogListenerFactory(CatalogListenerFactory catalogListenerFactory) {
-        this.catalogListenerFactory = catalogListenerFactory;
-    }
 
     @Bean
     @ConditionalOnProperty(value = "listeners.deimos.enabled", matchIfMissing = true)
-    public CatalogListener deimosCatalogListener() {
-        return catalogListenerFactory.create(DEIMOS_URL);
+    public CatalogEndpoint deimosCatalog(@Value("${listener.deimos.upsert:}") UpsertStrategy upsert) {
+        return new CatalogEndpoint("deimos", DEIMOS_URL, null, null, upsert);
     }
 
     @Bean
     @ConditionalOnProperty(value = "listeners.gmu.enabled", matchIfMissing = true)
-    public CatalogListener gmuCatalogListener(@Value("${listener.gmu.username:}") String username,
-                                              @Value("${listener.gmu.password:}") String password) {
-        return catalogListenerFactory.create(GMU_URL, username, password);
+    public CatalogEndpoint gmuCatalog(@Value("${listener.gmu.username:}") String username,
+                                      @Value("${listener.gmu.password:}") String password,
+                                      @Value("${listener.gmu.upsert:}") UpsertStrategy upsert) {
+        return new CatalogEndpoint("gmu", GMU_URL, username, password, upsert);
     }
 }
@@ -0,0 +1,45 @@
+/*
+ * Copyright 2019-2020 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.n52.javaps.eopad;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.prometheus.PrometheusConfig;
+import io.micrometer.prometheus.PrometheusMeterRegistry;
+import org.n52.javaps.catalog.EncodingCache;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+public class MetricsConfiguration {
+
+    @Bean
+    public PrometheusMeterRegistry prometheusMeterRegistry(EncodingCache encodingCache) {
+        PrometheusMeterRegistry registry = new PrometheusMeterRegistry(PrometheusConfig.DEFAULT);
+        bindEncodingCache(registry, encodingCache);
+        return registry;
+    }
+
+    private static void bindEncodingCache(MeterRegistry registry, EncodingCache encodingCache) {
+        FunctionCounter.builder("catalog.encoding.cache", encodingCache, EncodingCache::getHits)
+                       .tag("result", "hit")
+                       .register(registry);
+        FunctionCounter.builder("catalog.encoding.cache", encodingCache, EncodingCache::getMisses)
+                       .tag("result", "miss")
+                       .register(registry);
+    }
+}
@@ -0,0 +1,48 @@
+/*
+ * Copyright 2019-2020 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.n52.javaps.eopad;
+
+import io.micrometer.prometheus.PrometheusMeterRegistry;
+import io.prometheus.client.exporter.common.TextFormat;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Controller;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.ResponseBody;
+
+import java.util.Objects;
+
+/**
+ * Exposes the catalog metrics in the Prometheus text format. The endpoint is not authenticated and therefore only
+ * enabled with {@code metrics.endpoint.enabled=true}.
+ */
+@Controller
+@ConditionalOnProperty(value = "metrics.endpoint.enabled", havingValue = "true")
+public class MetricsController {
+    private PrometheusMeterRegistry registry;
+
+    @Autowired
+    public void setRegistry(PrometheusMeterRegistry registry) {
+        this.registry = Objects.requireNonNull(registry);
+    }
+
+    @ResponseBody
+    @GetMapping(value = "/metrics", produces = TextFormat.CONTENT_TYPE_004)
+    public String scrape() {
+        return registry.scrape();
+    }
+}